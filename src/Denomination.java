@@ -0,0 +1,87 @@
+// Denomination.java
+// D&D coin types and their value in copper pieces. Used to turn Money entries
+// (e.g. "Gold;25") and catalog costs (e.g. "15 gp") into exact long copper amounts.
+
+import java.util.Locale;
+import java.util.StringJoiner;
+
+public enum Denomination {
+    PP("Platinum", 1000),
+    GP("Gold", 100),
+    EP("Electrum", 50),
+    SP("Silver", 10),
+    CP("Copper", 1);
+
+    public static final int COINS_PER_POUND = 50; // PHB: 50 coins weigh one pound
+
+    private final String fullName;
+    private final long copperValue;
+
+    Denomination(String fullName, long copperValue) {
+        this.fullName = fullName;
+        this.copperValue = copperValue;
+    }
+
+    public String getFullName() { return fullName; }
+    public long getCopperValue() { return copperValue; }
+
+    // --- Value of 'count' coins in copper. Throws ArithmeticException on overflow. ---
+    public long toCopper(long count) {
+        return Math.multiplyExact(count, copperValue);
+    }
+
+    // --- Match a Money item name or cost suffix: "gp", "Gold", "gold pieces", "Gold Coins" ... ---
+    // Returns null if the name is not a recognised coin.
+    public static Denomination fromName(String name) {
+        if (name == null) return null;
+        String n = name.trim().toLowerCase(Locale.ROOT);
+        if (n.endsWith(" pieces")) n = n.substring(0, n.length() - 7);
+        else if (n.endsWith(" piece")) n = n.substring(0, n.length() - 6);
+        else if (n.endsWith(" coins")) n = n.substring(0, n.length() - 6);
+        else if (n.endsWith(" coin")) n = n.substring(0, n.length() - 5);
+        for (Denomination d : values()) {
+            if (n.equals(d.name().toLowerCase(Locale.ROOT)) || n.equals(d.fullName.toLowerCase(Locale.ROOT))) {
+                return d;
+            }
+        }
+        return null;
+    }
+
+    // --- Parse a cost such as "15 gp", "2sp" or "1,000 gp" into copper. Throws NumberFormatException if invalid. ---
+    public static long parseCost(String text) {
+        String t = text.trim().replace(",", "");
+        int split = 0;
+        while (split < t.length() && Character.isDigit(t.charAt(split))) {
+            split++;
+        }
+        if (split == 0) {
+            throw new NumberFormatException("Missing amount in cost: " + text);
+        }
+        String unit = t.substring(split).trim();
+        Denomination d = unit.isEmpty() ? CP : fromName(unit);
+        if (d == null) {
+            throw new NumberFormatException("Unknown coin type in cost: " + text);
+        }
+        try {
+            return d.toCopper(Long.parseLong(t.substring(0, split)));
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Cost too large: " + text);
+        }
+    }
+
+    // --- Format a copper amount as a gp/sp/cp value, e.g. 1234 -> "12 gp 3 sp 4 cp" ---
+    // Platinum and electrum are folded in; use InventoryTotals.getCoins for the coins actually carried.
+    public static String format(long copper) {
+        if (copper == 0) return "0 gp";
+        StringJoiner parts = new StringJoiner(" ");
+        long remaining = Math.abs(copper); // Totals saturate at +/-Long.MAX_VALUE, so never MIN_VALUE
+        for (Denomination d : new Denomination[]{GP, SP, CP}) {
+            long count = remaining / d.copperValue;
+            remaining %= d.copperValue;
+            if (count > 0) {
+                parts.add(count + " " + d.name().toLowerCase(Locale.ROOT));
+            }
+        }
+        return (copper < 0 ? "-" : "") + parts;
+    }
+}
@@ -0,0 +1,42 @@
+// EventLogListener.java
+// Appends inventory events to a plain text log so tools running outside this program
+// (loot tracker, encumbrance calculator, feed stand-in) can follow changes by tailing it.
+//
+// One line per event, tab-separated:
+//   Timestamp  Type  Character  Category  ItemName  OldQuantity  NewQuantity  NewDescription
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class EventLogListener implements InventoryEventBus.Listener {
+
+    private final File logFile;
+
+    public EventLogListener(File logFile) {
+        this.logFile = logFile;
+    }
+
+    // Runs on the bus's dispatcher thread, so file I/O here never delays the menu
+    @Override
+    public void onEvents(List<InventoryEvent> batch) {
+        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(logFile, true), StandardCharsets.UTF_8)))) {
+            for (InventoryEvent e : batch) {
+                writer.println(e.getTimestamp() + "\t" + e.getType() + "\t" + field(e.getCharacterName())
+                        + "\t" + field(e.getCategory()) + "\t" + field(e.getItemName())
+                        + "\t" + e.getOldQuantity() + "\t" + e.getNewQuantity() + "\t" + field(e.getNewDescription()));
+            }
+            if (writer.checkError()) {
+                System.err.println("Warning: Could not write to event log: " + logFile.getName());
+            }
+        } catch (IOException e) {
+            System.err.println("Warning: Could not open event log '" + logFile.getName() + "': " + e.getMessage());
+        }
+    }
+
+    // Keep each event on one line with a fixed number of columns
+    private static String field(String value) {
+        return value == null ? "" : value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+}
@@ -0,0 +1,266 @@
+// InventoryCache.java
+// Keeps a compact binary copy of each parsed character inventory so unchanged
+// .txt files can be loaded without re-parsing them line by line.
+//
+// Cache file layout (one per character file, all ints/longs big-endian):
+//   Header : magic "DNDC", version, source size, source mtime, source CRC32C, block count, header CRC32C
+//   Blocks : record count, payload length, block CRC32C (over record count, payload length and payload), payload
+//   Record : category (UTF), item name (UTF), quantity (int), description (UTF)
+// A cache entry is only used when size, mtime and CRC32C of the .txt file all match. Size and
+// CRC32C always come from the exact bytes that were parsed or written, never from a second read.
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+public class InventoryCache {
+
+    private static final int MAGIC = 0x444E4443; // "DNDC"
+    private static final short VERSION = 2;
+    private static final int HEADER_BYTES = 4 + 2 + 8 + 8 + 4 + 4 + 4;
+    private static final int BLOCK_HEADER_BYTES = 4 + 4 + 4;
+    private static final int RECORDS_PER_BLOCK = 256;
+    private static final String CACHE_EXTENSION = ".invcache";
+
+    public static final long DEFAULT_MAX_BYTES = 8L * 1024 * 1024; // 8 MB across all characters
+
+    private final File cacheDir;
+    private final long maxBytes;
+
+    public InventoryCache(File cacheDir, long maxBytes) {
+        this.cacheDir = cacheDir;
+        this.maxBytes = maxBytes;
+    }
+
+    // --- Returns Category -> ItemName -> ItemDetails for 'source', or null if there is no valid cache entry ---
+    // 'content' is the current contents of 'source'; the caller holds the character's lock while it was read.
+    public Map<String, Map<String, InventoryManager.ItemDetails>> load(File source, byte[] content) {
+        File cacheFile = cacheFileFor(source);
+        if (!cacheFile.isFile()) return null;
+
+        try {
+            byte[] data = Files.readAllBytes(cacheFile.toPath());
+            // 1. Header: cheap checks first (size, mtime), checksum of the content last
+            if (data.length < HEADER_BYTES) {
+                return corrupt(cacheFile, "truncated header (" + data.length + " bytes)");
+            }
+            DataInputStream header = new DataInputStream(new ByteArrayInputStream(data, 0, HEADER_BYTES));
+            int magic = header.readInt();
+            short version = header.readShort();
+            long sourceSize = header.readLong();
+            long sourceMtime = header.readLong();
+            int sourceCrc = header.readInt();
+            int blockCount = header.readInt();
+            int headerCrc = header.readInt();
+            if (magic != MAGIC) {
+                return corrupt(cacheFile, "unrecognised format at offset 0");
+            }
+            if (version != VERSION) {
+                return null; // Written by an older version; store() will replace it
+            }
+            if (headerCrc != crc(data, 0, HEADER_BYTES - 4)) {
+                return corrupt(cacheFile, "header checksum mismatch at offset 0");
+            }
+
+            BasicFileAttributes attrs = Files.readAttributes(source.toPath(), BasicFileAttributes.class);
+            if (content.length != sourceSize || attrs.lastModifiedTime().toMillis() != sourceMtime) {
+                return null; // Source changed since it was cached
+            }
+            if (crc(content, 0, content.length) != sourceCrc) {
+                return null; // Same size and mtime but different contents
+            }
+
+            // 2. Blocks: each one is verified before any of its records are used
+            Map<String, Map<String, InventoryManager.ItemDetails>> result = new LinkedHashMap<>();
+            int offset = HEADER_BYTES;
+            int recordIndex = 0;
+            for (int block = 0; block < blockCount; block++) {
+                if (offset + BLOCK_HEADER_BYTES > data.length) {
+                    return corrupt(cacheFile, "block " + block + " truncated at offset " + offset);
+                }
+                DataInputStream blockHeader = new DataInputStream(new ByteArrayInputStream(data, offset, BLOCK_HEADER_BYTES));
+                int recordCount = blockHeader.readInt();
+                int payloadLength = blockHeader.readInt();
+                int blockCrc = blockHeader.readInt();
+                int payloadStart = offset + BLOCK_HEADER_BYTES;
+                if (payloadLength < 0 || payloadLength > data.length - payloadStart) {
+                    return corrupt(cacheFile, "block " + block + " has an invalid length at offset " + offset);
+                }
+                if (blockCrc != blockCrc(data, offset, payloadStart, payloadLength)) {
+                    return corrupt(cacheFile, "block " + block + " checksum mismatch at offset " + offset
+                            + " (records from " + recordIndex + ")");
+                }
+                if (recordCount < 0) {
+                    return corrupt(cacheFile, "block " + block + " has a negative record count at offset " + offset);
+                }
+
+                // Decode only from this block's own bytes, and require the records to fill it exactly
+                ByteArrayInputStream slice = new ByteArrayInputStream(data, payloadStart, payloadLength);
+                DataInputStream records = new DataInputStream(slice);
+                for (int r = 0; r < recordCount; r++) {
+                    try {
+                        String category = records.readUTF();
+                        String itemName = records.readUTF();
+                        int quantity = records.readInt();
+                        String description = records.readUTF();
+                        result.computeIfAbsent(category, k -> new LinkedHashMap<>())
+                                .put(itemName, new InventoryManager.ItemDetails(quantity, description));
+                    } catch (EOFException e) {
+                        return corrupt(cacheFile, "block " + block + " at offset " + offset + " ends inside record "
+                                + (recordIndex + r));
+                    }
+                }
+                if (slice.available() != 0) {
+                    return corrupt(cacheFile, "block " + block + " at offset " + offset + " has " + slice.available()
+                            + " unread byte(s) after " + recordCount + " record(s)");
+                }
+                offset = payloadStart + payloadLength;
+                recordIndex += recordCount;
+            }
+            if (offset != data.length) {
+                return corrupt(cacheFile, "unexpected data after the last block at offset " + offset);
+            }
+
+            cacheFile.setLastModified(System.currentTimeMillis()); // Mark as recently used for LRU eviction
+            return result;
+
+        } catch (UTFDataFormatException e) {
+            return corrupt(cacheFile, "invalid text data (" + e.getMessage() + ")");
+        } catch (IOException | SecurityException e) {
+            System.out.println("Warning: Could not read inventory cache (" + e.getMessage() + "). Reading file instead.");
+            return null;
+        }
+    }
+
+    // --- Write a cache entry recording that 'source', holding exactly 'content', parses to 'inventory' ---
+    // Call while still holding the character's lock used to read or write 'content', so the file's
+    // mtime belongs to the same version. Old entries are then evicted if the cache is over budget.
+    public void store(File source, byte[] content, Map<String, Map<String, InventoryManager.ItemDetails>> inventory) {
+        try {
+            if (!cacheDir.isDirectory() && !cacheDir.mkdirs()) {
+                return; // Caching is best-effort; the .txt file is always the source of truth
+            }
+            BasicFileAttributes attrs = Files.readAttributes(source.toPath(), BasicFileAttributes.class);
+            int sourceCrc = crc(content, 0, content.length);
+
+            int recordTotal = 0;
+            for (Map<String, InventoryManager.ItemDetails> items : inventory.values()) {
+                recordTotal += items.size();
+            }
+            int blockCount = (recordTotal + RECORDS_PER_BLOCK - 1) / RECORDS_PER_BLOCK;
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bytes);
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeLong(content.length);
+            out.writeLong(attrs.lastModifiedTime().toMillis());
+            out.writeInt(sourceCrc);
+            out.writeInt(blockCount);
+            out.flush();
+            out.writeInt(crc(bytes.toByteArray(), 0, HEADER_BYTES - 4));
+
+            // Records are grouped into blocks of RECORDS_PER_BLOCK, each with its own CRC
+            ByteArrayOutputStream payloadBytes = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(payloadBytes);
+            int recordsInBlock = 0;
+            for (Map.Entry<String, Map<String, InventoryManager.ItemDetails>> cat : inventory.entrySet()) {
+                for (Map.Entry<String, InventoryManager.ItemDetails> item : cat.getValue().entrySet()) {
+                    payload.writeUTF(cat.getKey());
+                    payload.writeUTF(item.getKey());
+                    payload.writeInt(item.getValue().quantity);
+                    payload.writeUTF(item.getValue().description);
+                    if (++recordsInBlock == RECORDS_PER_BLOCK) {
+                        writeBlock(out, payloadBytes, recordsInBlock);
+                        recordsInBlock = 0;
+                    }
+                }
+            }
+            if (recordsInBlock > 0) {
+                writeBlock(out, payloadBytes, recordsInBlock);
+            }
+            out.flush();
+
+            // Write to a temp file and rename, so a crash never leaves a half-written entry behind
+            File cacheFile = cacheFileFor(source);
+            Path temp = Files.createTempFile(cacheDir.toPath(), cacheFile.getName(), ".tmp");
+            Files.write(temp, bytes.toByteArray());
+            Files.move(temp, cacheFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+            evictIfNeeded();
+        } catch (IOException | SecurityException e) {
+            System.out.println("Warning: Could not update inventory cache (" + e.getMessage() + ").");
+        }
+    }
+
+    // --- Drop the cache entry for a character file (e.g. after a failed load) ---
+    public void invalidate(File source) {
+        File cacheFile = cacheFileFor(source);
+        if (cacheFile.exists() && !cacheFile.delete()) {
+            System.out.println("Warning: Could not delete stale cache file: " + cacheFile.getName());
+        }
+    }
+
+    // --- Least-recently-used eviction: delete the oldest entries until the cache fits in maxBytes ---
+    private void evictIfNeeded() {
+        File[] entries = cacheDir.listFiles((dir, name) -> name.endsWith(CACHE_EXTENSION));
+        if (entries == null) return;
+
+        long total = 0;
+        for (File f : entries) {
+            total += f.length();
+        }
+        if (total <= maxBytes) return;
+
+        Arrays.sort(entries, Comparator.comparingLong(File::lastModified)); // Oldest use first
+        for (File f : entries) {
+            if (total <= maxBytes) break;
+            long size = f.length();
+            if (f.delete()) {
+                total -= size;
+            }
+        }
+    }
+
+    private static void writeBlock(DataOutputStream out, ByteArrayOutputStream payloadBytes, int recordCount) throws IOException {
+        byte[] p = payloadBytes.toByteArray();
+        byte[] block = new byte[BLOCK_HEADER_BYTES + p.length];
+        ByteBuffer buf = ByteBuffer.wrap(block);
+        buf.putInt(recordCount).putInt(p.length).putInt(0).put(p);
+        buf.putInt(8, blockCrc(block, 0, BLOCK_HEADER_BYTES, p.length)); // CRC covers the count and length too
+        out.write(block);
+        payloadBytes.reset();
+    }
+
+    // CRC32C of a block's record count and payload length (first 8 bytes at blockStart) plus its payload
+    private static int blockCrc(byte[] data, int blockStart, int payloadStart, int payloadLength) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, blockStart, 8);
+        crc.update(data, payloadStart, payloadLength);
+        return (int) crc.getValue();
+    }
+
+    private File cacheFileFor(File source) {
+        return new File(cacheDir, source.getName() + CACHE_EXTENSION);
+    }
+
+    private Map<String, Map<String, InventoryManager.ItemDetails>> corrupt(File cacheFile, String reason) {
+        System.out.println("Warning: Inventory cache " + cacheFile.getName() + " is corrupt: " + reason + ". Reading file instead.");
+        if (!cacheFile.delete()) {
+            System.out.println("Warning: Could not delete corrupt cache file: " + cacheFile.getName());
+        }
+        return null;
+    }
+
+    private static int crc(byte[] data, int offset, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(data, offset, length);
+        return (int) crc.getValue();
+    }
+}
@@ -0,0 +1,83 @@
+// InventoryEvent.java
+// A single change to a character's inventory, published by InventoryManager
+// through the InventoryEventBus so other tools can react to it.
+
+import java.time.LocalDateTime;
+
+public final class InventoryEvent {
+
+    // --- The kinds of change the core mutation paths can produce ---
+    public enum Type {
+        ITEM_ADDED,          // Item did not exist before
+        QUANTITY_CHANGED,    // Existing item, quantity differs
+        DESCRIPTION_CHANGED, // Existing item, description differs
+        ITEM_REMOVED,        // Item stack removed from its category
+        SAVED                // Character's inventory written to file
+    }
+
+    private final Type type;
+    private final String characterName;
+    private final String category;       // null for SAVED
+    private final String itemName;       // null for SAVED
+    private final int oldQuantity;
+    private final int newQuantity;
+    private final String oldDescription;
+    private final String newDescription;
+    private final LocalDateTime timestamp;
+
+    private InventoryEvent(Type type, String characterName, String category, String itemName,
+                           int oldQuantity, int newQuantity, String oldDescription, String newDescription) {
+        this.type = type;
+        this.characterName = characterName;
+        this.category = category;
+        this.itemName = itemName;
+        this.oldQuantity = oldQuantity;
+        this.newQuantity = newQuantity;
+        this.oldDescription = oldDescription != null ? oldDescription : "";
+        this.newDescription = newDescription != null ? newDescription : "";
+        this.timestamp = LocalDateTime.now();
+    }
+
+    // --- Factory methods, one per event type ---
+    public static InventoryEvent itemAdded(String characterName, String category, String itemName, int quantity, String description) {
+        return new InventoryEvent(Type.ITEM_ADDED, characterName, category, itemName, 0, quantity, "", description);
+    }
+
+    public static InventoryEvent quantityChanged(String characterName, String category, String itemName, int oldQuantity, int newQuantity) {
+        return new InventoryEvent(Type.QUANTITY_CHANGED, characterName, category, itemName, oldQuantity, newQuantity, null, null);
+    }
+
+    public static InventoryEvent descriptionChanged(String characterName, String category, String itemName, int quantity,
+                                                    String oldDescription, String newDescription) {
+        return new InventoryEvent(Type.DESCRIPTION_CHANGED, characterName, category, itemName, quantity, quantity, oldDescription, newDescription);
+    }
+
+    public static InventoryEvent itemRemoved(String characterName, String category, String itemName, int oldQuantity, String oldDescription) {
+        return new InventoryEvent(Type.ITEM_REMOVED, characterName, category, itemName, oldQuantity, 0, oldDescription, "");
+    }
+
+    public static InventoryEvent saved(String characterName) {
+        return new InventoryEvent(Type.SAVED, characterName, null, null, 0, 0, null, null);
+    }
+
+    // --- Getters ---
+    public Type getType() { return type; }
+    public String getCharacterName() { return characterName; }
+    public String getCategory() { return category; }
+    public String getItemName() { return itemName; }
+    public int getOldQuantity() { return oldQuantity; }
+    public int getNewQuantity() { return newQuantity; }
+    public int getQuantityDelta() { return newQuantity - oldQuantity; }
+    public String getOldDescription() { return oldDescription; }
+    public String getNewDescription() { return newDescription; }
+    public LocalDateTime getTimestamp() { return timestamp; }
+
+    @Override
+    public String toString() {
+        if (type == Type.SAVED) {
+            return timestamp + " " + type + " [" + characterName + "]";
+        }
+        return timestamp + " " + type + " [" + characterName + "] " + category + ";" + itemName
+                + " " + oldQuantity + " -> " + newQuantity;
+    }
+}
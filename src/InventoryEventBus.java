@@ -0,0 +1,207 @@
+// InventoryEventBus.java
+// Delivers InventoryEvents to subscribers (loot tracker, encumbrance calculator, feeds, ...).
+// Each subscriber gets its own bounded ring buffer and dispatcher thread, so publishing
+// never waits on a listener: a slow listener only ever falls behind (and drops) on its own.
+//
+// Tools attach in one of two ways:
+//   - Out of process: read the event log written by EventLogListener (one tab-separated line per event).
+//   - In process: put a class implementing InventoryEventBus.Listener (public, no-arg constructor) on the
+//     classpath and list it in META-INF/services/InventoryEventBus$Listener; main() subscribes it at startup.
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+public class InventoryEventBus {
+
+    // --- Callback implemented by subscribers. Called on the subscriber's dispatcher thread. ---
+    @FunctionalInterface
+    public interface Listener {
+        void onEvents(List<InventoryEvent> batch);
+    }
+
+    // --- What to do when a subscriber's buffer is full ---
+    public enum Backpressure {
+        DROP_NEWEST, // Discard the event being published (keeps the oldest history)
+        DROP_OLDEST  // Overwrite the oldest buffered event (keeps the latest state)
+    }
+
+    public static final int DEFAULT_CAPACITY = 1024;
+    public static final int DEFAULT_MAX_BATCH = 64;
+
+    private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private volatile boolean closed = false;
+
+    // --- Subscribe with default buffer size, batch size and DROP_OLDEST ---
+    public Subscription subscribe(String name, Listener listener) {
+        return subscribe(name, listener, DEFAULT_CAPACITY, DEFAULT_MAX_BATCH, Backpressure.DROP_OLDEST);
+    }
+
+    public Subscription subscribe(String name, Listener listener, int capacity, int maxBatch, Backpressure backpressure) {
+        if (listener == null || backpressure == null) {
+            throw new IllegalArgumentException("Listener and backpressure policy are required.");
+        }
+        if (capacity < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Capacity and batch size must be at least 1.");
+        }
+        if (closed) {
+            throw new IllegalStateException("Event bus has been shut down.");
+        }
+        Subscription sub = new Subscription(name, listener, capacity, maxBatch, backpressure);
+        subscriptions.add(sub);
+        sub.dispatcher.start();
+        return sub;
+    }
+
+    // --- Subscribe every Listener registered through ServiceLoader. Returns how many were attached. ---
+    public int subscribeInstalledListeners() {
+        int attached = 0;
+        try {
+            for (Listener listener : ServiceLoader.load(Listener.class)) {
+                subscribe(listener.getClass().getSimpleName(), listener);
+                System.out.println("Event listener attached: " + listener.getClass().getName());
+                attached++;
+            }
+        } catch (ServiceConfigurationError e) {
+            System.err.println("Warning: Could not load an inventory event listener: " + e.getMessage());
+        }
+        return attached;
+    }
+
+    // --- Hand an event to every subscriber. Never blocks on a listener. ---
+    public void publish(InventoryEvent event) {
+        if (closed || event == null) return;
+        for (Subscription sub : subscriptions) {
+            sub.offer(event);
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    // --- Stop accepting events and give dispatchers up to timeoutMillis to drain what is buffered ---
+    public void shutdown(long timeoutMillis) {
+        closed = true;
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Subscription sub : subscriptions) {
+            sub.close();
+        }
+        for (Subscription sub : subscriptions) {
+            long remaining = TimeUnit.NANOSECONDS.toMillis(deadline - System.nanoTime());
+            try {
+                sub.dispatcher.join(Math.max(1, remaining));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+            if (sub.getDroppedCount() > 0) {
+                System.err.println("Warning: Subscriber '" + sub.name + "' dropped " + sub.getDroppedCount() + " event(s).");
+            }
+        }
+        subscriptions.clear();
+    }
+
+    // --- One subscriber: a fixed-size ring buffer plus the thread that drains it in batches ---
+    public final class Subscription {
+        private final String name;
+        private final Listener listener;
+        private final Backpressure backpressure;
+        private final int maxBatch;
+
+        private final InventoryEvent[] ring;
+        private long head = 0; // Next slot to read  (guarded by this)
+        private long tail = 0; // Next slot to write (guarded by this)
+        private boolean open = true;
+
+        private volatile long dropped = 0;
+        private volatile long delivered = 0;
+
+        private final Thread dispatcher;
+
+        private Subscription(String name, Listener listener, int capacity, int maxBatch, Backpressure backpressure) {
+            this.name = name != null ? name : "subscriber";
+            this.listener = listener;
+            this.maxBatch = maxBatch;
+            this.backpressure = backpressure;
+            this.ring = new InventoryEvent[capacity];
+            this.dispatcher = new Thread(this::dispatchLoop, "inventory-events-" + this.name);
+            this.dispatcher.setDaemon(true); // Never keep the program alive on its own
+        }
+
+        // Publisher side: O(1), holds the monitor only long enough to write one slot
+        private synchronized void offer(InventoryEvent event) {
+            if (!open) return;
+            if (tail - head == ring.length) {
+                dropped++;
+                if (backpressure == Backpressure.DROP_NEWEST) {
+                    return;
+                }
+                ring[(int) (head % ring.length)] = null; // DROP_OLDEST
+                head++;
+            }
+            ring[(int) (tail % ring.length)] = event;
+            tail++;
+            if (tail - head == 1) {
+                notify(); // Buffer went from empty to non-empty; wake the dispatcher
+            }
+        }
+
+        // Dispatcher side: waits for at least one event, then takes up to maxBatch
+        private synchronized List<InventoryEvent> takeBatch() throws InterruptedException {
+            while (head == tail && open) {
+                wait();
+            }
+            int count = (int) Math.min(tail - head, maxBatch);
+            List<InventoryEvent> batch = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                int slot = (int) (head % ring.length);
+                batch.add(ring[slot]);
+                ring[slot] = null;
+                head++;
+            }
+            return batch;
+        }
+
+        private void dispatchLoop() {
+            try {
+                while (true) {
+                    List<InventoryEvent> batch = takeBatch();
+                    if (batch.isEmpty()) {
+                        return; // Closed and fully drained
+                    }
+                    try {
+                        listener.onEvents(batch);
+                    } catch (RuntimeException e) {
+                        System.err.println("Warning: Subscriber '" + name + "' failed to handle events: " + e);
+                    }
+                    delivered += batch.size();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        // Stop receiving new events; anything already buffered is still delivered
+        public synchronized void close() {
+            open = false;
+            notifyAll();
+        }
+
+        public void unsubscribe() {
+            close();
+            subscriptions.remove(this);
+        }
+
+        public String getName() { return name; }
+        public long getDroppedCount() { return dropped; }
+        public long getDeliveredCount() { return delivered; }
+
+        public synchronized int getBufferedCount() {
+            return (int) (tail - head);
+        }
+    }
+}
@@ -3,11 +3,15 @@
 // MODIFIED: Added item descriptions for specific categories.
 
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Scanner;
 import java.util.ArrayList;
 import java.util.List;
 import java.io.*; // Required for file operations
+import java.nio.charset.Charset; // Explicit encoding for character files
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files; // Whole-file reads, so the cache and the parser see the same bytes
 import java.time.LocalDateTime; // For timestamp in save file
 import java.util.Arrays; // For sorting files
 import java.util.Comparator; // For sorting files
@@ -20,6 +24,9 @@ public class InventoryManager {
     // Alternatively:
     // private static final String INVENTORY_DIR_PATH = "C:/Users/Public/DnD_Information"; // [cite: 57]
 
+    // --- Encoding of character files. Fixed so files read the same on every platform and JDK. ---
+    static final Charset FILE_CHARSET = StandardCharsets.UTF_8;
+
     // *** MODIFIED: Data Structure ***
     // Holds the *current* character's inventory: Category -> ItemName -> ItemDetails
     private static Map<String, Map<String, ItemDetails>> inventory = new HashMap<>(); // [cite: 58] // MODIFIED
@@ -27,6 +34,9 @@ public class InventoryManager {
     // --- Holds the full path to the currently loaded character's file ---
     private static String currentActiveInventoryFile = null; // [cite: 59]
     private static String currentCharacterName = null; // Store the name for display // [cite: 59]
+    // Bytes of the character file as last loaded or saved (null if there was none), so a save can tell
+    // whether another copy of the program changed the file in the meantime
+    private static byte[] currentFileContent = null;
 
     private static Scanner scanner = new Scanner(System.in); // [cite: 60] // Shared scanner
 
@@ -40,8 +50,24 @@ public class InventoryManager {
     // *** NEW: Categories that support descriptions ***
     private static final List<String> descriptionCategories = List.of(CAT_WEAPONS, CAT_IMPORTANT, CAT_GENERAL);
 
-    // *** NEW: Inner class to hold item details ***
-    private static class ItemDetails {
+    // *** NEW: Change-event stream for other tools (loot tracker, feeds, ...) ***
+    private static final InventoryEventBus eventBus = new InventoryEventBus();
+    private static final long EVENT_DRAIN_TIMEOUT_MS = 2000; // How long Quit waits for subscribers to catch up
+    private static final String EVENT_LOG_FILE_NAME = "inventory_events.log"; // Tailed by external tools
+
+    // *** NEW: Binary cache of parsed inventories, so unchanged files skip re-parsing ***
+    private static final InventoryCache inventoryCache =
+            new InventoryCache(new File(INVENTORY_DIR_PATH, ".cache"), InventoryCache.DEFAULT_MAX_BYTES);
+
+    // *** NEW: Item catalog (weight/cost/type) and running encumbrance + value totals ***
+    private static final String CATALOG_FILE_NAME = "item_catalog.dat"; // Semicolon-delimited; not .txt, so it isn't listed as a character
+    private static InventoryTotals totals = new InventoryTotals(ItemCatalog.empty(), CAT_MONEY); // Replaced in main()
+
+    // *** NEW: All-or-nothing item trades between character files ***
+    private static final InventoryTrades trades = new InventoryTrades(new File(INVENTORY_DIR_PATH), InventoryManager::publishEvent);
+
+    // *** NEW: Inner class to hold item details (package-private so InventoryCache can rebuild it) ***
+    static class ItemDetails {
         int quantity;
         String description;
 
@@ -54,21 +80,29 @@ public class InventoryManager {
     // --- Main Program Flow ---
     public static void main(String[] args) {
 
+        // --- Phase 0: Load the item catalog used for weight and value totals ---
+        totals = new InventoryTotals(ItemCatalog.open(new File(INVENTORY_DIR_PATH, CATALOG_FILE_NAME)), CAT_MONEY);
+
         // --- Phase 1: Character Selection/Creation ---
         if (!selectOrCreateCharacter()) {
             System.err.println("Failed to select or create a character inventory. Exiting."); // [cite: 64]
+            eventBus.shutdown(EVENT_DRAIN_TIMEOUT_MS);
             scanner.close();
             return; // Exit if character selection fails
         }
         // Now currentActiveInventoryFile and currentCharacterName are set
 
+        // --- Attach event subscribers: the local event log, plus any listeners installed on the classpath ---
+        eventBus.subscribe("event-log", new EventLogListener(new File(INVENTORY_DIR_PATH, EVENT_LOG_FILE_NAME)));
+        eventBus.subscribeInstalledListeners();
+
         // --- Phase 2: Inventory Management Loop ---
         String menuChoice; // [cite: 65]
         boolean quit = false; // [cite: 65]
 
         do {
             displayMenu(); // [cite: 66] // Menu now shows character name
-            menuChoice = SafeInput.getRegExString(scanner, "Enter your choice", "^[AaDdPpSsQq]$").toUpperCase(); // [cite: 67]
+            menuChoice = SafeInput.getRegExString(scanner, "Enter your choice", "^[AaDdPpSsTtQq]$").toUpperCase(); // [cite: 67]
             switch (menuChoice) {
                 case "A":
                     addItem(); // [cite: 68]
@@ -82,6 +116,9 @@ public class InventoryManager {
                 case "S":
                     saveInventory(); // [cite: 71] // Saves the *current* character's inventory
                     break; // [cite: 72]
+                case "T":
+                    tradeItems(); // NEW: Move items to another character's inventory
+                    break;
                 case "Q":
                     boolean confirmSave = SafeInput.getYNConfirm(scanner, "Save " + currentCharacterName + "'s inventory before quitting?"); // [cite: 73]
                     if (confirmSave) {
@@ -98,9 +135,39 @@ public class InventoryManager {
 
         } while (!quit);
 
+        eventBus.shutdown(EVENT_DRAIN_TIMEOUT_MS); // Flush buffered events to subscribers
         scanner.close(); // [cite: 79] // Close the scanner when done
     }
 
+    // --- Event stream access: subscribe here to receive inventory changes ---
+    public static InventoryEventBus getEventBus() {
+        return eventBus;
+    }
+
+    // Apply an event to the running totals, then hand it to subscribers
+    private static void publishEvent(InventoryEvent event) {
+        totals.apply(event);
+        eventBus.publish(event);
+    }
+
+    // Publish the event(s) describing how an item went from 'before' to 'after' (either may be null)
+    private static void publishItemChange(String category, String itemName, ItemDetails before, ItemDetails after) {
+        if (before == null && after == null) return;
+        if (before == null) {
+            publishEvent(InventoryEvent.itemAdded(currentCharacterName, category, itemName, after.quantity, after.description));
+        } else if (after == null) {
+            publishEvent(InventoryEvent.itemRemoved(currentCharacterName, category, itemName, before.quantity, before.description));
+        } else {
+            if (before.quantity != after.quantity) {
+                publishEvent(InventoryEvent.quantityChanged(currentCharacterName, category, itemName, before.quantity, after.quantity));
+            }
+            if (!before.description.equals(after.description)) {
+                publishEvent(InventoryEvent.descriptionChanged(currentCharacterName, category, itemName, after.quantity,
+                        before.description, after.description));
+            }
+        }
+    }
+
     // --- Character Selection Logic (Unchanged logic, only file path validation) ---
     private static boolean selectOrCreateCharacter() {
         File inventoryDir = new File(INVENTORY_DIR_PATH); // [cite: 80]
@@ -122,17 +189,16 @@ public class InventoryManager {
             return false; // Cannot proceed
         }
 
+        // NEW: Finish any trade that was interrupted before its files were all swapped in
+        try {
+            trades.recover();
+        } catch (IOException e) {
+            System.err.println("Error recovering an interrupted trade: " + e.getMessage());
+            return false; // Character files may be inconsistent; don't load them
+        }
 
         // 2. Find existing character files (.txt extension) (Logic from)
-        File[] inventoryFiles = inventoryDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".txt")); // [cite: 87]
-        List<String> characterNames = new ArrayList<>();
-        if (inventoryFiles != null) {
-            Arrays.sort(inventoryFiles, Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER)); // [cite: 88]
-            for (File f : inventoryFiles) {
-                String fileName = f.getName(); // [cite: 89]
-                characterNames.add(fileName.substring(0, fileName.length() - 4)); // [cite: 89]
-            }
-        }
+        List<String> characterNames = listCharacterNames(inventoryDir);
 
         // 3. Display Selection Menu (Logic from)
         SafeInput.prettyHeader("Select Character Inventory"); // [cite: 90]
@@ -192,9 +258,24 @@ public class InventoryManager {
         }
     }
 
+    // Helper to list character names (one per .txt file), sorted case-insensitively
+    private static List<String> listCharacterNames(File inventoryDir) {
+        File[] inventoryFiles = inventoryDir.listFiles((dir, name) -> name.toLowerCase().endsWith(".txt")); // [cite: 87]
+        List<String> characterNames = new ArrayList<>();
+        if (inventoryFiles != null) {
+            Arrays.sort(inventoryFiles, Comparator.comparing(File::getName, String.CASE_INSENSITIVE_ORDER)); // [cite: 88]
+            for (File f : inventoryFiles) {
+                String fileName = f.getName(); // [cite: 89]
+                characterNames.add(fileName.substring(0, fileName.length() - 4)); // [cite: 89]
+            }
+        }
+        return characterNames;
+    }
+
     // Helper to set up a fresh inventory map
     private static void initializeEmptyInventory() {
         inventory.clear(); // [cite: 107]
+        totals.reset(currentCharacterName); // Totals restart along with the inventory
         for (String cat : categories) {
             inventory.put(cat, new HashMap<>()); // [cite: 108] // MODIFIED: Value is Map<String, ItemDetails>
         }
@@ -217,6 +298,7 @@ public class InventoryManager {
         System.out.println("D - Delete an item stack"); // [cite: 112]
         System.out.println("P - Print inventory (All or by Category)"); // [cite: 113]
         System.out.println("S - Save inventory to file"); // [cite: 113]
+        System.out.println("T - Trade items to another character");
         System.out.println("Q - Quit the program"); // [cite: 113]
         System.out.println("\nCurrent Inventory Summary:"); // [cite: 114]
         boolean inventoryHasItems = inventory.values().stream().anyMatch(m -> m != null && !m.isEmpty()); // [cite: 115] // MODIFIED Check
@@ -226,9 +308,21 @@ public class InventoryManager {
             for (String category : categories) { // Iterate in defined order // [cite: 117]
                 Map<String, ItemDetails> items = inventory.get(category); // MODIFIED
                 if (items != null && !items.isEmpty()) { // Only show categories with items // [cite: 117]
-                    System.out.println("  Category [" + category + "]: " + items.size() + " item types"); // [cite: 118] // MODIFIED
+                    System.out.println("  Category [" + category + "]: " + items.size() + " item types ("
+                            + totals.getCategoryTotals(currentCharacterName, category) + ")"); // [cite: 118] // MODIFIED
+                }
+            }
+            System.out.println("  Total carried: " + totals.getCharacterTotals(currentCharacterName)); // NEW: Encumbrance and wealth
+            List<String> coins = new ArrayList<>();
+            for (Denomination d : Denomination.values()) {
+                long count = totals.getCoins(currentCharacterName, d);
+                if (count != 0) {
+                    coins.add(count + " " + d.name().toLowerCase());
                 }
             }
+            if (!coins.isEmpty()) {
+                System.out.println("  Coins: " + String.join(", ", coins)); // NEW: Money by denomination
+            }
         }
         System.out.println("------------------------------------"); // [cite: 119]
     }
@@ -253,6 +347,7 @@ public class InventoryManager {
             boolean removeItem = SafeInput.getYNConfirm(scanner, "Remove this item completely?"); // [cite: 124]
             if (removeItem) {
                 categoryItems.remove(itemName); // [cite: 125]
+                publishItemChange(category, itemName, currentDetails, null);
                 System.out.println("Item '" + itemName + "' removed from " + category + "."); // [cite: 126]
             } else {
                 // Keep item with 0 quantity, maybe update description
@@ -263,7 +358,9 @@ public class InventoryManager {
                         finalDescription = SafeInput.getNonZeroLenString(scanner, "Enter new description (or leave blank)");
                     }
                 }
-                categoryItems.put(itemName, new ItemDetails(0, finalDescription)); // MODIFIED
+                ItemDetails updatedDetails = new ItemDetails(0, finalDescription);
+                categoryItems.put(itemName, updatedDetails); // MODIFIED
+                publishItemChange(category, itemName, currentDetails, updatedDetails);
                 System.out.println("Item '" + itemName + "' quantity set to 0 in " + category + "."); // [cite: 128] // MODIFIED
             }
         } else {
@@ -279,7 +376,9 @@ public class InventoryManager {
                     }
                 }
             }
-            categoryItems.put(itemName, new ItemDetails(newQuantity, finalDescription)); // MODIFIED
+            ItemDetails updatedDetails = new ItemDetails(newQuantity, finalDescription);
+            categoryItems.put(itemName, updatedDetails); // MODIFIED
+            publishItemChange(category, itemName, currentDetails, updatedDetails);
             System.out.println("Updated '" + itemName + "' in " + category + ". New quantity: " + newQuantity); // [cite: 130] // MODIFIED
             if (descriptionCategories.contains(category)) {
                 System.out.println("  Description: \"" + finalDescription + "\"");
@@ -329,6 +428,7 @@ public class InventoryManager {
         if (confirmDelete) {
             ItemDetails removedValue = categoryItems.remove(itemToDelete); // [cite: 142] // MODIFIED
             if (removedValue != null) {
+                publishItemChange(category, itemToDelete, removedValue, null);
                 System.out.println("Item '" + itemToDelete + "' removed from " + category + "."); // [cite: 143]
             } else {
                 System.out.println("Item '" + itemToDelete + "' could not be found for removal (unexpected error)."); // [cite: 144]
@@ -338,6 +438,93 @@ public class InventoryManager {
         }
     }
 
+    // *** NEW: tradeItems moves one or more items to another character, all-or-nothing ***
+    private static void tradeItems() {
+        boolean inventoryHasItems = inventory.values().stream().anyMatch(m -> m != null && !m.isEmpty());
+        if (!inventoryHasItems) {
+            System.out.println("Inventory is empty. Nothing to trade.");
+            return;
+        }
+
+        // 1. Pick the character receiving the items
+        List<String> partners = listCharacterNames(new File(INVENTORY_DIR_PATH));
+        partners.removeIf(name -> name.equalsIgnoreCase(currentCharacterName));
+        if (partners.isEmpty()) {
+            System.out.println("No other character inventories found to trade with.");
+            return;
+        }
+        System.out.println("\nTrade with which character?");
+        for (int i = 0; i < partners.size(); i++) {
+            System.out.println((i + 1) + ". " + partners.get(i));
+        }
+        String partner = partners.get(SafeInput.getRangedInt(scanner, "Enter character number", 1, partners.size()) - 1);
+
+        // 2. Build the list of items to hand over
+        List<InventoryTrades.Transfer> transfers = new ArrayList<>();
+        do {
+            String category = selectCategory();
+            Map<String, ItemDetails> categoryItems = inventory.get(category);
+            List<String> itemList = new ArrayList<>();
+            if (categoryItems != null) {
+                for (Map.Entry<String, ItemDetails> item : categoryItems.entrySet()) {
+                    if (item.getValue().quantity > 0) {
+                        itemList.add(item.getKey());
+                    }
+                }
+            }
+            if (itemList.isEmpty()) {
+                System.out.println("  No items to trade in this category.");
+            } else {
+                itemList.sort(String.CASE_INSENSITIVE_ORDER);
+                for (int i = 0; i < itemList.size(); i++) {
+                    System.out.println("  " + (i + 1) + ". " + itemList.get(i) + " (" + categoryItems.get(itemList.get(i)).quantity + ")");
+                }
+                String itemName = itemList.get(SafeInput.getRangedInt(scanner, "Enter the number of the item to trade", 1, itemList.size()) - 1);
+                boolean alreadyQueued = false;
+                for (InventoryTrades.Transfer t : transfers) {
+                    if (t.getCategory().equals(category) && t.getItemName().equals(itemName)) {
+                        alreadyQueued = true;
+                        break;
+                    }
+                }
+                if (alreadyQueued) {
+                    System.out.println("'" + itemName + "' is already part of this trade.");
+                } else {
+                    int quantity = SafeInput.getRangedInt(scanner, "Enter the quantity to give", 1, categoryItems.get(itemName).quantity);
+                    transfers.add(new InventoryTrades.Transfer(currentCharacterName, partner, category, itemName, quantity));
+                }
+            }
+        } while (SafeInput.getYNConfirm(scanner, "Add another item to this trade?"));
+
+        if (transfers.isEmpty()) {
+            System.out.println("Trade cancelled: no items selected.");
+            return;
+        }
+
+        // 3. Confirm, save the current state, then commit both files together
+        System.out.println("\nTrade summary (" + currentCharacterName + " -> " + partner + "):");
+        for (InventoryTrades.Transfer t : transfers) {
+            System.out.println("  - " + t.getQuantity() + " x " + t.getItemName() + " (" + t.getCategory() + ")");
+        }
+        if (!SafeInput.getYNConfirm(scanner, "This saves " + currentCharacterName + "'s inventory first. Proceed with trade?")) {
+            System.out.println("Trade cancelled.");
+            return;
+        }
+        if (!saveInventory()) {
+            System.out.println("Trade cancelled because the inventory could not be saved.");
+            return;
+        }
+        try {
+            trades.execute(transfers);
+            System.out.println("Trade with " + partner + " completed.");
+        } catch (InventoryTrades.TradeException e) {
+            System.out.println("Trade cancelled: " + e.getMessage());
+        } catch (IOException e) {
+            System.err.println("Error during trade: " + e.getMessage());
+        }
+        loadInventory(); // Pick up the committed result (or the unchanged file if it failed)
+    }
+
     // *** MODIFIED: printInventory to handle descriptions when printing specific categories ***
     private static void printInventory() {
         boolean inventoryHasItems = inventory.values().stream().anyMatch(m -> m != null && !m.isEmpty()); // [cite: 146] // MODIFIED Check
@@ -404,6 +591,7 @@ public class InventoryManager {
     // *** MODIFIED: loadInventory to handle descriptions and new format ***
     private static void loadInventory() {
         initializeEmptyInventory(); // [cite: 162] // Clear out any previous character's data
+        currentFileContent = null;
 
         if (currentActiveInventoryFile == null) {
             System.err.println("Error: No character inventory file selected for loading."); // [cite: 163]
@@ -421,7 +609,56 @@ public class InventoryManager {
             return;
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) { // [cite: 167]
+        // Hold the character's lock so a trade can't replace the file between reading it and caching the result
+        InventoryTrades.Locks held = null;
+        try {
+            held = trades.lock(List.of(currentCharacterName));
+            byte[] content = Files.readAllBytes(file.toPath()); // [cite: 167]
+            currentFileContent = content;
+            // Fast path: the file is unchanged since it was last parsed
+            Map<String, Map<String, ItemDetails>> loaded = inventoryCache.load(file, content);
+            boolean fromCache = loaded != null;
+            if (!fromCache) {
+                loaded = parseAndCache(inventoryCache, file, content); // Next load of this unchanged file can skip parsing
+            }
+            for (Map.Entry<String, Map<String, ItemDetails>> cat : loaded.entrySet()) {
+                for (Map.Entry<String, ItemDetails> item : cat.getValue().entrySet()) {
+                    putLoadedItem(cat.getKey(), item.getKey(), item.getValue());
+                }
+            }
+            System.out.println("Inventory for " + currentCharacterName + " loaded successfully" + (fromCache ? " (from cache)." : ".")); // [cite: 177]
+        } catch (IOException e) {
+            inventoryCache.invalidate(file);
+            System.err.println("Error loading inventory from file '" + currentActiveInventoryFile + "': " + e.getMessage()); // [cite: 178]
+            initializeEmptyInventory(); // Reset to empty state on error [cite: 179]
+            System.out.println("Starting with empty inventory due to loading error."); // [cite: 179]
+        } finally {
+            if (held != null) held.close();
+        }
+    }
+
+    // Helper to place a loaded item, adding unknown categories dynamically (as per original code)
+    private static void putLoadedItem(String category, String itemName, ItemDetails details) {
+        Map<String, ItemDetails> categoryItems = inventory.computeIfAbsent(category, k -> { // [cite: 171] // MODIFIED
+            System.out.println("Warning: Category '" + k + "' found in file but not pre-defined. Adding it."); // [cite: 172]
+            if (!categories.contains(k)) { // [cite: 172]
+                categories.add(k); // [cite: 173]
+            }
+            return new HashMap<>(); // [cite: 174]
+        });
+        categoryItems.put(itemName, details);
+        totals.add(currentCharacterName, category, itemName, details.quantity);
+    }
+
+    // Parse a character file into Category -> ItemName -> ItemDetails (used by InventoryTrades)
+    static Map<String, Map<String, ItemDetails>> readInventoryFile(File file) throws IOException {
+        return parseInventoryFile(Files.readAllBytes(file.toPath()));
+    }
+
+    // Parse the bytes of a character file (shared by loadInventory, saveInventory and readInventoryFile)
+    static Map<String, Map<String, ItemDetails>> parseInventoryFile(byte[] content) throws IOException {
+        Map<String, Map<String, ItemDetails>> result = new LinkedHashMap<>();
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(content), FILE_CHARSET))) { // [cite: 167]
             String line;
             int lineNumber = 0; // [cite: 168]
             while ((line = reader.readLine()) != null) { // [cite: 168]
@@ -443,16 +680,7 @@ public class InventoryManager {
                             description = parts[3];
                         }
 
-                        // Ensure category exists in map, add dynamically if needed (as per original code)
-                        Map<String, ItemDetails> categoryItems = inventory.computeIfAbsent(category, k -> { // [cite: 171] // MODIFIED
-                            System.out.println("Warning: Category '" + k + "' found in file but not pre-defined. Adding it."); // [cite: 172]
-                            if (!categories.contains(k)) { // [cite: 172]
-                                categories.add(k); // [cite: 173]
-                            }
-                            return new HashMap<>(); // [cite: 174]
-                        });
-
-                        categoryItems.put(itemName, new ItemDetails(quantity, description)); // [cite: 174] // MODIFIED
+                        result.computeIfAbsent(category, k -> new LinkedHashMap<>()).put(itemName, new ItemDetails(quantity, description));
 
                     } catch (NumberFormatException e) {
                         System.out.println("Warning: Skipping line " + lineNumber + " with invalid quantity in file: " + line); // [cite: 175]
@@ -461,20 +689,16 @@ public class InventoryManager {
                     System.out.println("Warning: Skipping malformed line " + lineNumber + " in file: " + line); // [cite: 176]
                 }
             }
-            System.out.println("Inventory for " + currentCharacterName + " loaded successfully."); // [cite: 177]
-        } catch (IOException e) {
-            System.err.println("Error loading inventory from file '" + currentActiveInventoryFile + "': " + e.getMessage()); // [cite: 178]
-            initializeEmptyInventory(); // Reset to empty state on error [cite: 179]
-            System.out.println("Starting with empty inventory due to loading error."); // [cite: 179]
         }
+        return result;
     }
 
 
     // *** MODIFIED: saveInventory to handle descriptions and new format ***
-    private static void saveInventory() {
+    private static boolean saveInventory() {
         if (currentActiveInventoryFile == null) {
             System.err.println("Error: No character inventory file selected for saving."); // [cite: 180]
-            return; // Should not happen
+            return false; // Should not happen
         }
 
         File inventoryFile = new File(currentActiveInventoryFile); // [cite: 181]
@@ -483,36 +707,99 @@ public class InventoryManager {
         if (parentDir == null || !parentDir.canWrite()) { // [cite: 182]
             System.err.println("Error: Cannot write to inventory directory (check permissions): " + (parentDir != null ? parentDir.getAbsolutePath() : "Invalid Path")); // [cite: 182]
             System.err.println("Inventory NOT saved."); // [cite: 182]
-            return;
+            return false;
         }
 
-        try (PrintWriter writer = new PrintWriter(new BufferedWriter(new FileWriter(inventoryFile)))) { // [cite: 182]
-            writer.println("# Inventory Data for: " + currentCharacterName); // [cite: 183]
-            writer.println("# Saved on: " + LocalDateTime.now()); // [cite: 183]
-            writer.println("# Format: Category;ItemName;Quantity[;Description]"); // NEW: Header explaining format
-            for (String category : categories) { // [cite: 184]
-                Map<String, ItemDetails> items = inventory.get(category); // [cite: 184] // MODIFIED
-                if (items != null && !items.isEmpty()) { // [cite: 184]
-                    List<String> sortedItemNames = new ArrayList<>(items.keySet()); // [cite: 185]
-                    sortedItemNames.sort(String.CASE_INSENSITIVE_ORDER); // [cite: 185]
-                    for (String itemName : sortedItemNames) {
-                        ItemDetails details = items.get(itemName); // MODIFIED
-                        writer.print(category + ";" + itemName + ";" + details.quantity); // [cite: 186] // MODIFIED - Print base part
-                        // Append description only if category supports it and description is not empty
-                        if (descriptionCategories.contains(category) && !details.description.isEmpty()) {
-                            writer.print(";" + details.description); // MODIFIED - Append description
-                        }
-                        writer.println(); // Newline after each item
-                    }
+        boolean saved = false;
+        // Don't interleave with a trade on this file, from this or any other copy of the program
+        InventoryTrades.Locks held = null;
+        try {
+            held = trades.lock(List.of(currentCharacterName));
+            if (!trades.isWritable(currentCharacterName)) {
+                System.err.println("Error: " + currentCharacterName + " has a trade that could not be finished. Restart the program to complete it.");
+                System.err.println("Inventory NOT saved.");
+                return false;
+            }
+            // Never silently revert changes made since loading (e.g. a trade from another copy of the program).
+            // Other copies wait on this character's lock while the question is open.
+            byte[] onDisk = inventoryFile.exists() ? Files.readAllBytes(inventoryFile.toPath()) : null;
+            if (!Arrays.equals(onDisk, currentFileContent)) {
+                System.out.println("Warning: " + inventoryFile.getName() + " was changed by another program (or another copy of this one) since it was loaded.");
+                if (!SafeInput.getYNConfirm(scanner, "Overwrite those changes with " + currentCharacterName + "'s inventory as shown here?")) {
+                    System.err.println("Inventory NOT saved.");
+                    return false;
                 }
             }
+
+            // Written to a temp file and renamed over the original, so a crash never leaves it truncated
+            byte[] content = renderInventoryFile(currentCharacterName, inventory);
+            trades.replaceFile(inventoryFile, content); // [cite: 182]
+            currentFileContent = content;
+            parseAndCache(inventoryCache, inventoryFile, content); // Still under the lock, so no trade can land in between
             System.out.println(currentCharacterName + "'s inventory successfully saved."); // [cite: 187]
+            publishEvent(InventoryEvent.saved(currentCharacterName));
+            saved = true;
         } catch (IOException e) {
             System.err.println("Error saving inventory to file '" + currentActiveInventoryFile + "': " + e.getMessage()); // [cite: 188]
             System.err.println("Inventory NOT saved."); // [cite: 188]
         } catch (SecurityException se) {
             System.err.println("Error saving inventory due to security restrictions: " + se.getMessage()); // [cite: 189]
             System.err.println("Inventory NOT saved."); // [cite: 189]
+        } finally {
+            if (held != null) held.close();
+        }
+        return saved;
+    }
+
+    // Parse 'content' (just read from or written to 'file') and cache the result. The cache only ever holds
+    // what a fresh load of the file gives back, which can differ from the in-memory map that was saved
+    // (e.g. an item name containing ';', or a description with surrounding spaces).
+    static Map<String, Map<String, ItemDetails>> parseAndCache(InventoryCache cache, File file, byte[] content) throws IOException {
+        Map<String, Map<String, ItemDetails>> parsed = parseInventoryFile(content);
+        cache.store(file, content, parsed);
+        return parsed;
+    }
+
+    // The complete text of a character file, encoded with FILE_CHARSET (shared by saveInventory and InventoryTrades)
+    static byte[] renderInventoryFile(String characterName, Map<String, Map<String, ItemDetails>> inventoryData) {
+        StringWriter text = new StringWriter();
+        try (PrintWriter writer = new PrintWriter(text)) {
+            writeInventoryFile(writer, characterName, inventoryData);
+        }
+        return text.toString().getBytes(FILE_CHARSET);
+    }
+
+    // Write a character's inventory in the text format
+    static void writeInventoryFile(PrintWriter writer, String characterName, Map<String, Map<String, ItemDetails>> inventoryData) {
+        writer.println("# Inventory Data for: " + characterName); // [cite: 183]
+        writer.println("# Saved on: " + LocalDateTime.now()); // [cite: 183]
+        writer.println("# Format: Category;ItemName;Quantity[;Description]"); // NEW: Header explaining format
+        for (String category : categoryOrder(inventoryData)) { // [cite: 184]
+            Map<String, ItemDetails> items = inventoryData.get(category); // [cite: 184] // MODIFIED
+            if (items != null && !items.isEmpty()) { // [cite: 184]
+                List<String> sortedItemNames = new ArrayList<>(items.keySet()); // [cite: 185]
+                sortedItemNames.sort(String.CASE_INSENSITIVE_ORDER); // [cite: 185]
+                for (String itemName : sortedItemNames) {
+                    ItemDetails details = items.get(itemName); // MODIFIED
+                    writer.print(category + ";" + itemName + ";" + details.quantity); // [cite: 186] // MODIFIED - Print base part
+                    // Append description only if category supports it and description is not empty
+                    if (descriptionCategories.contains(category) && !details.description.isEmpty()) {
+                        writer.print(";" + details.description); // MODIFIED - Append description
+                    }
+                    writer.println(); // Newline after each item
+                }
+            }
+        }
+    }
+
+    // Known categories in their defined order, followed by any others present in the data
+    private static List<String> categoryOrder(Map<String, Map<String, ItemDetails>> inventoryData) {
+        List<String> order = new ArrayList<>(List.of(CAT_WEAPONS, CAT_IMPORTANT, CAT_GENERAL, CAT_MONEY));
+        for (String category : inventoryData.keySet()) {
+            if (!order.contains(category)) {
+                order.add(category);
+            }
         }
+        return order;
     }
-}
\ No newline at end of file
+}
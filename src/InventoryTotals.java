@@ -0,0 +1,163 @@
+// InventoryTotals.java
+// Running encumbrance and value totals per character and per category.
+// Totals are built once when an inventory is loaded and then adjusted by the quantity
+// delta of each InventoryEvent, so they never need to be recomputed from scratch.
+// Weights are kept in hundredths of a pound and values in copper pieces, as exact longs.
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+
+public class InventoryTotals {
+
+    // --- Weight and value for one character or one category ---
+    public static final class Totals {
+        private long weightHundredths;
+        private long valueCopper;
+        private boolean overflowed; // Set once a total saturated; cleared only by a reset
+
+        public long getWeightHundredths() { return weightHundredths; }
+        public long getValueCopper() { return valueCopper; }
+        public boolean hasOverflowed() { return overflowed; }
+
+        private void add(long weightDelta, long valueDelta) {
+            weightHundredths = saturatingAdd(weightHundredths, weightDelta);
+            valueCopper = saturatingAdd(valueCopper, valueDelta);
+        }
+
+        private long saturatingAdd(long a, long b) {
+            try {
+                return Math.addExact(a, b);
+            } catch (ArithmeticException e) {
+                overflowed = true;
+                return b > 0 ? Long.MAX_VALUE : -Long.MAX_VALUE;
+            }
+        }
+
+        // e.g. "12.5 lb, 15 gp 2 sp"
+        @Override
+        public String toString() {
+            return (overflowed ? "overflow: " : "") + formatWeight(weightHundredths) + ", " + Denomination.format(valueCopper);
+        }
+    }
+
+    private static final class CharacterTotals {
+        final Totals overall = new Totals();
+        final Map<String, Totals> byCategory = new HashMap<>();
+        final Map<Denomination, Long> coins = new EnumMap<>(Denomination.class);
+    }
+
+    private static final long COIN_WEIGHT_HUNDREDTHS = 100 / Denomination.COINS_PER_POUND;
+
+    private final ItemCatalog catalog;
+    private final String moneyCategory;
+    private final Map<String, CharacterTotals> characters = new HashMap<>();
+
+    public InventoryTotals(ItemCatalog catalog, String moneyCategory) {
+        this.catalog = catalog;
+        this.moneyCategory = moneyCategory;
+    }
+
+    // --- Start tracking a character from zero (call before re-adding a freshly loaded inventory) ---
+    public synchronized void reset(String characterName) {
+        characters.put(characterName, new CharacterTotals());
+    }
+
+    // --- Add a loaded item stack to a tracked character ---
+    public synchronized void add(String characterName, String category, String itemName, int quantity) {
+        CharacterTotals ct = characters.get(characterName);
+        if (ct != null) {
+            applyDelta(ct, category, itemName, quantity);
+        }
+    }
+
+    // --- Incremental update from a change event. Events for untracked characters are ignored. ---
+    public synchronized void apply(InventoryEvent event) {
+        switch (event.getType()) {
+            case ITEM_ADDED:
+            case QUANTITY_CHANGED:
+            case ITEM_REMOVED:
+                add(event.getCharacterName(), event.getCategory(), event.getItemName(), event.getQuantityDelta());
+                break;
+            default:
+                break; // Descriptions and saves don't change weight or value
+        }
+    }
+
+    public synchronized Totals getCharacterTotals(String characterName) {
+        CharacterTotals ct = characters.get(characterName);
+        return ct != null ? copy(ct.overall) : new Totals();
+    }
+
+    public synchronized Totals getCategoryTotals(String characterName, String category) {
+        CharacterTotals ct = characters.get(characterName);
+        Totals t = ct != null ? ct.byCategory.get(category) : null;
+        return t != null ? copy(t) : new Totals();
+    }
+
+    public synchronized long getCoins(String characterName, Denomination denomination) {
+        CharacterTotals ct = characters.get(characterName);
+        return ct != null ? ct.coins.getOrDefault(denomination, 0L) : 0L;
+    }
+
+    private void applyDelta(CharacterTotals ct, String category, String itemName, long quantityDelta) {
+        if (quantityDelta == 0) return;
+
+        long unitWeight;
+        long unitValue;
+        Denomination coin = category.equals(moneyCategory) ? Denomination.fromName(itemName) : null;
+        if (coin != null) {
+            unitWeight = COIN_WEIGHT_HUNDREDTHS;
+            unitValue = coin.getCopperValue();
+            ct.coins.merge(coin, quantityDelta, InventoryTotals::coinSum);
+        } else {
+            ItemCatalog.Entry entry = catalog.lookup(itemName);
+            if (entry == null) return; // Unknown items have no weight or value to track
+            unitWeight = entry.getWeightHundredths();
+            unitValue = entry.getCostCopper();
+        }
+
+        Totals categoryTotals = ct.byCategory.computeIfAbsent(category, k -> new Totals());
+        long weightDelta = saturatingMultiply(quantityDelta, unitWeight, categoryTotals, ct.overall);
+        long valueDelta = saturatingMultiply(quantityDelta, unitValue, categoryTotals, ct.overall);
+        categoryTotals.add(weightDelta, valueDelta);
+        ct.overall.add(weightDelta, valueDelta);
+    }
+
+    private static long saturatingMultiply(long quantity, long unit, Totals a, Totals b) {
+        try {
+            return Math.multiplyExact(quantity, unit);
+        } catch (ArithmeticException e) {
+            a.overflowed = true;
+            b.overflowed = true;
+            return (quantity < 0) == (unit < 0) ? Long.MAX_VALUE : -Long.MAX_VALUE;
+        }
+    }
+
+    private static Long coinSum(Long a, Long b) {
+        try {
+            return Math.addExact(a, b);
+        } catch (ArithmeticException e) {
+            return b > 0 ? Long.MAX_VALUE : -Long.MAX_VALUE;
+        }
+    }
+
+    private static Totals copy(Totals t) {
+        Totals c = new Totals();
+        c.weightHundredths = t.weightHundredths;
+        c.valueCopper = t.valueCopper;
+        c.overflowed = t.overflowed;
+        return c;
+    }
+
+    // --- 1250 -> "12.5 lb" ---
+    public static String formatWeight(long weightHundredths) {
+        String sign = weightHundredths < 0 ? "-" : "";
+        long abs = Math.abs(weightHundredths);
+        long pounds = abs / 100;
+        long fraction = abs % 100;
+        if (fraction == 0) return sign + pounds + " lb";
+        if (fraction % 10 == 0) return sign + pounds + "." + (fraction / 10) + " lb";
+        return sign + pounds + "." + (fraction < 10 ? "0" : "") + fraction + " lb";
+    }
+}
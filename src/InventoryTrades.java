@@ -0,0 +1,479 @@
+// InventoryTrades.java
+// Moves batches of items between character inventory files, all-or-nothing.
+//
+// Each trade locks every character it touches in a fixed (case-insensitive name) order,
+// so two trades can never wait on each other; trades with no characters in common run
+// in parallel. A character's lock is held against other threads (ReentrantLock) and
+// against other program instances using the same directory (a FileChannel lock on a
+// file in .locks/), so two copies of the program can't interleave their writes either.
+// New inventories are written to temp files and fsync'd, then a journal
+// listing them is created before they are renamed over the originals. If the program
+// dies part-way through the renames, recover() finishes them from the journal on the
+// next start, so a trade is either fully applied or not applied at all. If a rename
+// fails while the program is running, it is retried under the locks; if it still fails,
+// the characters involved stay read-only until recover() has run. Ordinary saves go
+// through replaceFile(), which uses the same temp-file-and-rename step, so a crash
+// never leaves a character file half-written.
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class InventoryTrades {
+
+    // --- One line of a trade: move 'quantity' of an item from one character to another ---
+    public static final class Transfer {
+        private final String fromCharacter;
+        private final String toCharacter;
+        private final String category;
+        private final String itemName;
+        private final int quantity;
+
+        public Transfer(String fromCharacter, String toCharacter, String category, String itemName, int quantity) {
+            this.fromCharacter = fromCharacter;
+            this.toCharacter = toCharacter;
+            this.category = category;
+            this.itemName = itemName;
+            this.quantity = quantity;
+        }
+
+        public String getFromCharacter() { return fromCharacter; }
+        public String getToCharacter() { return toCharacter; }
+        public String getCategory() { return category; }
+        public String getItemName() { return itemName; }
+        public int getQuantity() { return quantity; }
+
+        @Override
+        public String toString() {
+            return quantity + " x " + itemName + " (" + category + ") from " + fromCharacter + " to " + toCharacter;
+        }
+    }
+
+    // --- Thrown when a trade is rejected; nothing has been written when this is thrown ---
+    public static class TradeException extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        public TradeException(String message) {
+            super(message);
+        }
+    }
+
+    private static final String JOURNAL_PREFIX = ".trade-";
+    private static final String JOURNAL_SUFFIX = ".journal";
+    private static final String TEMP_SUFFIX = ".trade-tmp";
+    private static final String LOCK_DIR_NAME = ".locks";
+    private static final String LOCK_SUFFIX = ".lock";
+    private static final long LOCK_POLL_MAX_MS = 20; // Longest wait between attempts on another instance's lock
+    private static final String INVALID_NAME_PATTERN = ".*[<>:\"/\\\\|?*].*"; // Same rule as character creation
+    // Trade ids are "<pid>-<millis>-<counter>"; the pid tells recover() whether the owner is still running
+    private static final Pattern TRADE_ID_PATTERN = Pattern.compile(
+            "[.-](\\d+)-\\d+-\\d+(?:" + Pattern.quote(JOURNAL_SUFFIX) + ")?(?:" + Pattern.quote(TEMP_SUFFIX) + ")?$");
+    private static final int RENAME_ATTEMPTS = 5;
+    private static final long RENAME_RETRY_DELAY_MS = 100; // Grows linearly per attempt (e.g. a virus scanner holding the file)
+
+    private final File inventoryDir;
+    private final Consumer<InventoryEvent> eventSink;
+    private final Map<String, ReentrantLock> locks = new ConcurrentHashMap<>();
+    private final AtomicLong tradeCounter = new AtomicLong();
+    private final Set<String> pendingRecovery = ConcurrentHashMap.newKeySet(); // Lock keys with a half-applied trade
+
+    public InventoryTrades(File inventoryDir, Consumer<InventoryEvent> eventSink) {
+        this.inventoryDir = inventoryDir;
+        this.eventSink = eventSink != null ? eventSink : e -> { };
+    }
+
+    // --- Locks held on a set of characters; close() releases them ---
+    public static final class Locks implements AutoCloseable {
+        private final List<ReentrantLock> threadLocks = new ArrayList<>();
+        private final List<FileChannel> fileLocks = new ArrayList<>(); // null where this thread already held the lock
+
+        @Override
+        public void close() {
+            for (int i = threadLocks.size() - 1; i >= 0; i--) {
+                FileChannel channel = i < fileLocks.size() ? fileLocks.get(i) : null;
+                if (channel != null) {
+                    try {
+                        channel.close(); // Releases the file lock
+                    } catch (IOException e) {
+                        System.err.println("Warning: Could not release a character lock file: " + e.getMessage());
+                    }
+                }
+                threadLocks.get(i).unlock();
+            }
+        }
+    }
+
+    // --- Lock the files of the given characters, in sorted key order, against other threads and other instances ---
+    // Anything else reading or writing a character file should hold its lock too. Blocks until every lock is held.
+    public Locks lock(Collection<String> characterNames) throws IOException {
+        TreeSet<String> keys = new TreeSet<>();
+        for (String name : characterNames) {
+            keys.add(lockKey(name));
+        }
+        File lockDir = new File(inventoryDir, LOCK_DIR_NAME);
+        if (!lockDir.isDirectory() && !lockDir.mkdirs() && !lockDir.isDirectory()) {
+            throw new IOException("Cannot create lock directory " + lockDir.getPath());
+        }
+        Locks held = new Locks();
+        try {
+            for (String key : keys) {
+                ReentrantLock lock = locks.computeIfAbsent(key, k -> new ReentrantLock());
+                lock.lock();
+                held.threadLocks.add(lock);
+                // A JVM may hold a file lock only once, so only the outermost hold in this process takes it
+                FileChannel channel = null;
+                if (lock.getHoldCount() == 1) {
+                    channel = FileChannel.open(new File(lockDir, key + LOCK_SUFFIX).toPath(),
+                            StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+                    try {
+                        awaitFileLock(channel);
+                    } catch (IOException | RuntimeException e) {
+                        channel.close();
+                        throw e;
+                    }
+                }
+                held.fileLocks.add(channel);
+            }
+        } catch (IOException | RuntimeException e) {
+            held.close();
+            throw e;
+        }
+        return held;
+    }
+
+    // Polled with tryLock() rather than a blocking lock(): POSIX file locks belong to the whole process, so
+    // the kernel's deadlock check misfires (EDEADLK) when threads of two instances wait on each other's
+    // locks, although taking them in sorted order already rules out a real deadlock.
+    private static void awaitFileLock(FileChannel channel) throws IOException {
+        long delay = 1;
+        while (channel.tryLock() == null) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a character lock");
+            }
+            delay = Math.min(delay * 2, LOCK_POLL_MAX_MS);
+        }
+    }
+
+    // --- False while the character has a committed trade that could not be fully applied ---
+    // Covers trades from other instances too, through journals whose temp files are still waiting.
+    // Call while holding the character's lock.
+    public boolean isWritable(String characterName) throws IOException {
+        if (pendingRecovery.contains(lockKey(characterName))) {
+            return false;
+        }
+        File[] journals = inventoryDir.listFiles((dir, name) -> name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX));
+        if (journals != null) {
+            String target = fileFor(characterName).getName();
+            for (File journal : journals) {
+                List<String> lines;
+                try {
+                    lines = Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8);
+                } catch (NoSuchFileException e) {
+                    continue; // Retired since the listing
+                }
+                for (String line : lines) {
+                    String[] parts = line.split("\t", 2);
+                    if (parts.length == 2 && parts[1].equalsIgnoreCase(target) && new File(inventoryDir, parts[0]).isFile()) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    // --- Apply every transfer or none of them ---
+    public void execute(List<Transfer> transfers) throws TradeException, IOException {
+        if (transfers == null || transfers.isEmpty()) {
+            throw new TradeException("Trade has no items.");
+        }
+
+        // 1. Validate and collect participants, keyed case-insensitively (file names are on Windows)
+        TreeMap<String, String> participants = new TreeMap<>(); // lock key -> character name
+        for (Transfer t : transfers) {
+            if (t.quantity <= 0) {
+                throw new TradeException("Quantity must be positive: " + t);
+            }
+            for (String name : new String[]{t.fromCharacter, t.toCharacter}) {
+                if (name == null || name.isEmpty() || name.matches(INVALID_NAME_PATTERN)) {
+                    throw new TradeException("Invalid character name in: " + t);
+                }
+                participants.putIfAbsent(lockKey(name), name);
+            }
+            if (lockKey(t.fromCharacter).equals(lockKey(t.toCharacter))) {
+                throw new TradeException("A character cannot trade with themselves: " + t);
+            }
+        }
+
+        // 2. Lock in sorted key order so concurrent trades can never deadlock
+        List<InventoryEvent> events = new ArrayList<>();
+        Locks held = lock(participants.values());
+        try {
+            for (Map.Entry<String, String> p : participants.entrySet()) {
+                if (!isWritable(p.getValue())) {
+                    throw new TradeException(p.getValue() + " has a trade that could not be finished. Restart the program to complete it.");
+                }
+            }
+
+            // 3. Read current state of every participant
+            Map<String, Map<String, Map<String, InventoryManager.ItemDetails>>> inventories = new HashMap<>();
+            for (Map.Entry<String, String> p : participants.entrySet()) {
+                File file = fileFor(p.getValue());
+                if (!file.isFile()) {
+                    throw new TradeException("No inventory file for character '" + p.getValue() + "'.");
+                }
+                inventories.put(p.getKey(), InventoryManager.readInventoryFile(file));
+            }
+
+            // 4. Apply the transfers in memory, rejecting the whole trade on any shortfall
+            for (Transfer t : transfers) {
+                Map<String, InventoryManager.ItemDetails> fromItems = inventories.get(lockKey(t.fromCharacter)).get(t.category);
+                InventoryManager.ItemDetails have = fromItems != null ? fromItems.get(t.itemName) : null;
+                if (have == null || have.quantity < t.quantity) {
+                    throw new TradeException(t.fromCharacter + " does not have " + t.quantity + " x '" + t.itemName + "' in "
+                            + t.category + " (has " + (have != null ? have.quantity : 0) + ").");
+                }
+                int remaining = have.quantity - t.quantity;
+                if (remaining == 0) {
+                    fromItems.remove(t.itemName);
+                    events.add(InventoryEvent.itemRemoved(participants.get(lockKey(t.fromCharacter)), t.category, t.itemName,
+                            have.quantity, have.description));
+                } else {
+                    fromItems.put(t.itemName, new InventoryManager.ItemDetails(remaining, have.description));
+                    events.add(InventoryEvent.quantityChanged(participants.get(lockKey(t.fromCharacter)), t.category, t.itemName,
+                            have.quantity, remaining));
+                }
+
+                Map<String, InventoryManager.ItemDetails> toItems =
+                        inventories.get(lockKey(t.toCharacter)).computeIfAbsent(t.category, k -> new LinkedHashMap<>());
+                InventoryManager.ItemDetails existing = toItems.get(t.itemName);
+                String toName = participants.get(lockKey(t.toCharacter));
+                if (existing == null) {
+                    toItems.put(t.itemName, new InventoryManager.ItemDetails(t.quantity, have.description));
+                    events.add(InventoryEvent.itemAdded(toName, t.category, t.itemName, t.quantity, have.description));
+                } else {
+                    int total;
+                    try {
+                        total = Math.addExact(existing.quantity, t.quantity);
+                    } catch (ArithmeticException e) {
+                        throw new TradeException(toName + " cannot hold that many '" + t.itemName + "'.");
+                    }
+                    toItems.put(t.itemName, new InventoryManager.ItemDetails(total, existing.description));
+                    events.add(InventoryEvent.quantityChanged(toName, t.category, t.itemName, existing.quantity, total));
+                }
+            }
+
+            // 5. Commit every participant's file together
+            commit(participants, inventories);
+        } finally {
+            held.close();
+        }
+
+        // 6. Tell subscribers only once the trade is durable
+        for (InventoryEvent e : events) {
+            eventSink.accept(e);
+        }
+    }
+
+    // --- Finish any trade whose journal was written but whose renames may not have completed ---
+    // Call once at startup, before any trades run.
+    public void recover() throws IOException {
+        // Files from a trade that another running instance is still in the middle of are left alone
+        File[] journals = inventoryDir.listFiles((dir, name) -> name.startsWith(JOURNAL_PREFIX) && name.endsWith(JOURNAL_SUFFIX)
+                && !ownedByLiveProcess(name));
+        if (journals != null) {
+            for (File journal : journals) {
+                List<String> lines = Files.readAllLines(journal.toPath(), StandardCharsets.UTF_8);
+                for (String line : lines) {
+                    String[] parts = line.split("\t", 2);
+                    if (parts.length != 2) continue;
+                    File temp = new File(inventoryDir, parts[0]);
+                    File target = new File(inventoryDir, parts[1]);
+                    if (temp.isFile()) {
+                        Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    }
+                }
+                System.out.println("Completed an interrupted trade (" + journal.getName() + ").");
+                Files.delete(journal.toPath());
+            }
+        }
+        pendingRecovery.clear();
+
+        // Temp files with no journal belong to trades (or saves) that never committed
+        File[] leftovers = inventoryDir.listFiles((dir, name) -> name.endsWith(TEMP_SUFFIX) && !ownedByLiveProcess(name));
+        if (leftovers != null) {
+            for (File f : leftovers) {
+                Files.deleteIfExists(f.toPath());
+            }
+        }
+    }
+
+    // True if a journal or temp file was created by another program instance that is still running.
+    // Names without a process id (written by older versions) count as abandoned. A reused pid only
+    // delays the clean-up of an abandoned file until that process exits.
+    private static boolean ownedByLiveProcess(String fileName) {
+        Matcher m = TRADE_ID_PATTERN.matcher(fileName);
+        if (!m.find()) return false;
+        long pid;
+        try {
+            pid = Long.parseLong(m.group(1));
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (pid == ProcessHandle.current().pid()) {
+            return false; // recover() runs before this instance starts any trade
+        }
+        return ProcessHandle.of(pid).map(ProcessHandle::isAlive).orElse(false);
+    }
+
+    // --- Replace one character file with 'content' the same way a trade does: temp file, fsync, atomic rename ---
+    // The caller must hold the character's lock. On failure the original file is left untouched.
+    public void replaceFile(File target, byte[] content) throws IOException {
+        File temp = null;
+        try {
+            temp = writeTemp(target, content, newTradeId());
+            List<Path[]> renames = new ArrayList<>();
+            renames.add(new Path[]{temp.toPath(), target.toPath()});
+            IOException failure = rollForward(renames);
+            if (failure != null) {
+                throw failure;
+            }
+            temp = null;
+            syncDirectory();
+        } finally {
+            if (temp != null) {
+                Files.deleteIfExists(temp.toPath());
+            }
+        }
+    }
+
+    private void commit(Map<String, String> participants,
+                        Map<String, Map<String, Map<String, InventoryManager.ItemDetails>>> inventories) throws IOException {
+        String tradeId = newTradeId();
+        List<Path[]> renames = new ArrayList<>();
+        boolean journaled = false;
+        try {
+            // a. Write and fsync the new version of every file
+            StringBuilder journalText = new StringBuilder();
+            for (Map.Entry<String, String> p : participants.entrySet()) {
+                File target = fileFor(p.getValue());
+                File temp = writeTemp(target,
+                        InventoryManager.renderInventoryFile(p.getValue(), inventories.get(p.getKey())), tradeId);
+                renames.add(new Path[]{temp.toPath(), target.toPath()});
+                journalText.append(temp.getName()).append('\t').append(target.getName()).append('\n');
+            }
+
+            // b. Journal appears atomically: from here on the trade counts as committed
+            File journal = new File(inventoryDir, JOURNAL_PREFIX + tradeId + JOURNAL_SUFFIX);
+            File journalTemp = new File(inventoryDir, journal.getName() + TEMP_SUFFIX);
+            try (FileOutputStream out = new FileOutputStream(journalTemp)) {
+                out.write(journalText.toString().getBytes(StandardCharsets.UTF_8));
+                out.getFD().sync();
+            }
+            Files.move(journalTemp.toPath(), journal.toPath(), StandardCopyOption.ATOMIC_MOVE);
+            journaled = true;
+            syncDirectory();
+
+            // c. Swap in the new files (retrying while we still hold the locks), then retire the journal
+            IOException failure = rollForward(renames);
+            if (failure != null) {
+                throw new IOException("Trade was committed but not fully applied (" + failure.getMessage() + "). "
+                        + String.join(", ", participants.values()) + " cannot be changed until the program is restarted.", failure);
+            }
+            syncDirectory();
+            try {
+                Files.deleteIfExists(journal.toPath());
+            } catch (IOException e) {
+                // Harmless: its temp files are gone, so recover() has nothing left to replay
+                System.err.println("Warning: Could not delete trade journal " + journal.getName() + ": " + e.getMessage());
+            }
+        } catch (IOException e) {
+            if (!journaled) {
+                // Nothing was committed: drop the temp files and leave the originals untouched
+                for (Path[] rename : renames) {
+                    Files.deleteIfExists(rename[0]);
+                }
+                throw e;
+            }
+            // Committed but not fully swapped in: nobody may write these files until recover() runs
+            pendingRecovery.addAll(participants.keySet());
+            throw e;
+        }
+    }
+
+    // Rename each temp file over its target, retrying failed renames. Returns the last error, or null once all are done.
+    // Completed renames are tracked here rather than inferred from the temp file being gone,
+    // since a missing temp file may also mean something else deleted it.
+    private IOException rollForward(List<Path[]> renames) {
+        boolean[] moved = new boolean[renames.size()];
+        IOException failure = null;
+        for (int attempt = 1; attempt <= RENAME_ATTEMPTS; attempt++) {
+            failure = null;
+            for (int i = 0; i < renames.size(); i++) {
+                if (moved[i]) continue; // Already moved on an earlier attempt
+                Path[] rename = renames.get(i);
+                try {
+                    Files.move(rename[0], rename[1], StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                    moved[i] = true;
+                } catch (IOException e) {
+                    failure = e;
+                }
+            }
+            if (failure == null) {
+                return null;
+            }
+            try {
+                Thread.sleep(RENAME_RETRY_DELAY_MS * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return failure;
+            }
+        }
+        return failure;
+    }
+
+    // Write and fsync 'content' to a temp file next to 'target'. A partly written temp file is deleted.
+    private File writeTemp(File target, byte[] content, String tradeId) throws IOException {
+        File temp = new File(inventoryDir, target.getName() + "." + tradeId + TEMP_SUFFIX);
+        try (FileOutputStream out = new FileOutputStream(temp)) {
+            out.write(content);
+            out.getFD().sync();
+        } catch (IOException e) {
+            Files.deleteIfExists(temp.toPath());
+            throw e;
+        }
+        return temp;
+    }
+
+    private String newTradeId() {
+        return ProcessHandle.current().pid() + "-" + System.currentTimeMillis() + "-" + tradeCounter.incrementAndGet();
+    }
+
+    // Make renames durable where the platform allows it (not supported on Windows; ignored there)
+    private void syncDirectory() {
+        try (FileChannel dir = FileChannel.open(inventoryDir.toPath(), StandardOpenOption.READ)) {
+            dir.force(true);
+        } catch (IOException | UnsupportedOperationException e) {
+            // Best effort only
+        }
+    }
+
+    private File fileFor(String characterName) {
+        return new File(inventoryDir, characterName + ".txt");
+    }
+
+    private static String lockKey(String characterName) {
+        return characterName.toLowerCase(Locale.ROOT);
+    }
+}
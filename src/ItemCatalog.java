@@ -0,0 +1,217 @@
+// ItemCatalog.java
+// Read-only catalog of item weights, costs and types (SRD-scale: tens of thousands of lines).
+// The data file is memory-mapped and indexed once with an open-addressing hash table of
+// line offsets, so name lookups are O(1) and entries are only decoded when asked for.
+//
+// File format (semicolon-delimited, one item per line, '#' starts a comment):
+//   Name;Type;Weight;Cost
+//   Longsword;Weapon;3;15 gp
+//   Rope, hempen (50 feet);Adventuring Gear;10;1 gp
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+
+public class ItemCatalog {
+
+    // --- One decoded catalog line ---
+    public static final class Entry {
+        private final String name;
+        private final String type;
+        private final long weightHundredths; // Pounds * 100, so 0.25 lb is 25
+        private final long costCopper;
+
+        Entry(String name, String type, long weightHundredths, long costCopper) {
+            this.name = name;
+            this.type = type;
+            this.weightHundredths = weightHundredths;
+            this.costCopper = costCopper;
+        }
+
+        public String getName() { return name; }
+        public String getType() { return type; }
+        public long getWeightHundredths() { return weightHundredths; }
+        public long getCostCopper() { return costCopper; }
+    }
+
+    private final MappedByteBuffer data; // null for an empty catalog
+    private final int[] slots;           // Line start offset + 1 for each entry; 0 marks an empty slot
+    private final int size;
+
+    // Per-slot decode results, filled on first lookup so each line is parsed (and warned about) once
+    private final Entry[] decoded;
+    private final boolean[] invalid;
+
+    private ItemCatalog(MappedByteBuffer data, int[] slots, int size) {
+        this.data = data;
+        this.slots = slots;
+        this.size = size;
+        this.decoded = new Entry[slots.length];
+        this.invalid = new boolean[slots.length];
+    }
+
+    public static ItemCatalog empty() {
+        return new ItemCatalog(null, new int[1], 0);
+    }
+
+    // --- Map and index the catalog file. A missing or unreadable file gives an empty catalog. ---
+    public static ItemCatalog open(File file) {
+        if (!file.isFile()) {
+            System.out.println("Item catalog (" + file.getName() + ") not found. Weights and values will only include coins.");
+            return empty();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                System.err.println("Error: Item catalog is too large to index: " + file.getName());
+                return empty();
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()); // Mapping outlives the channel
+
+            // 1. Count candidate lines to size the table (load factor <= 0.5)
+            int lines = 0;
+            for (int i = 0; i < data.limit(); i++) {
+                if (data.get(i) == '\n') lines++;
+            }
+            int capacity = Integer.highestOneBit(Math.max(2, lines + 1) * 2 - 1) << 1;
+            int[] slots = new int[capacity];
+
+            // 2. Insert each item line's offset under the hash of its name
+            int size = 0;
+            int lineStart = 0;
+            while (lineStart < data.limit()) {
+                int lineEnd = lineEnd(data, lineStart);
+                int nameStart = skipSpaces(data, lineStart, lineEnd);
+                int nameEnd = nameEnd(data, lineStart, lineEnd);
+                if (nameStart < lineEnd && data.get(nameStart) != '#' && nameEnd > nameStart) {
+                    int slot = hash(data, nameStart, nameEnd) & (capacity - 1);
+                    boolean duplicate = false;
+                    while (slots[slot] != 0) {
+                        if (nameMatches(data, slots[slot] - 1, data, nameStart, nameEnd)) {
+                            duplicate = true; // First definition wins
+                            break;
+                        }
+                        slot = (slot + 1) & (capacity - 1);
+                    }
+                    if (!duplicate) {
+                        slots[slot] = lineStart + 1;
+                        size++;
+                    }
+                }
+                lineStart = lineEnd + 1;
+            }
+            System.out.println("Item catalog loaded: " + size + " items.");
+            return new ItemCatalog(data, slots, size);
+        } catch (IOException e) {
+            System.err.println("Error loading item catalog '" + file.getName() + "': " + e.getMessage());
+            return empty();
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // --- Case-insensitive lookup by item name. Returns null if the item is not in the catalog. ---
+    public Entry lookup(String itemName) {
+        if (data == null || itemName == null) return null;
+        byte[] query = itemName.trim().getBytes(StandardCharsets.UTF_8);
+        if (query.length == 0) return null;
+        ByteBuffer q = ByteBuffer.wrap(query);
+
+        int mask = slots.length - 1;
+        int slot = hash(q, 0, query.length) & mask;
+        while (slots[slot] != 0) {
+            if (nameMatches(data, slots[slot] - 1, q, 0, query.length)) {
+                return decodeSlot(slot);
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    private synchronized Entry decodeSlot(int slot) {
+        if (decoded[slot] == null && !invalid[slot]) {
+            decoded[slot] = decode(slots[slot] - 1);
+            invalid[slot] = decoded[slot] == null;
+        }
+        return decoded[slot];
+    }
+
+    // --- Turn the line at 'lineStart' into an Entry ---
+    private Entry decode(int lineStart) {
+        int lineEnd = lineEnd(data, lineStart);
+        byte[] bytes = new byte[lineEnd - lineStart];
+        data.get(lineStart, bytes);
+        String line = new String(bytes, StandardCharsets.UTF_8).trim();
+        String[] parts = line.split(";", -1);
+        String name = parts[0].trim();
+        try {
+            String type = parts.length > 1 ? parts[1].trim() : "";
+            String weight = parts.length > 2 ? parts[2].trim() : "";
+            String cost = parts.length > 3 ? parts[3].trim() : "";
+            long weightHundredths = weight.isEmpty() || weight.equals("-") ? 0
+                    : new BigDecimal(weight).setScale(2, RoundingMode.HALF_UP).movePointRight(2).longValueExact();
+            long costCopper = cost.isEmpty() || cost.equals("-") ? 0 : Denomination.parseCost(cost);
+            return new Entry(name, type, weightHundredths, costCopper);
+        } catch (NumberFormatException | ArithmeticException e) {
+            System.out.println("Warning: Item catalog entry for '" + name + "' at offset " + lineStart + " is invalid: " + e.getMessage());
+            return null;
+        }
+    }
+
+    // --- Byte-level helpers over the mapped file (ASCII case folding, UTF-8 bytes otherwise compared exactly) ---
+
+    private static int lineEnd(ByteBuffer buf, int from) {
+        int i = from;
+        while (i < buf.limit() && buf.get(i) != '\n') i++;
+        return i;
+    }
+
+    private static int skipSpaces(ByteBuffer buf, int from, int to) {
+        int i = from;
+        while (i < to && isSpace(buf.get(i))) i++;
+        return i;
+    }
+
+    // End of the (trimmed) name field: up to the first ';', without trailing spaces
+    private static int nameEnd(ByteBuffer buf, int lineStart, int lineEnd) {
+        int i = lineStart;
+        while (i < lineEnd && buf.get(i) != ';') i++;
+        while (i > lineStart && isSpace(buf.get(i - 1))) i--;
+        return i;
+    }
+
+    private static boolean nameMatches(ByteBuffer buf, int lineStart, ByteBuffer other, int from, int to) {
+        int lineEnd = lineEnd(buf, lineStart);
+        int start = skipSpaces(buf, lineStart, lineEnd);
+        int end = nameEnd(buf, lineStart, lineEnd);
+        if (end - start != to - from) return false;
+        for (int i = 0; i < to - from; i++) {
+            if (lower(buf.get(start + i)) != lower(other.get(from + i))) return false;
+        }
+        return true;
+    }
+
+    private static int hash(ByteBuffer buf, int from, int to) {
+        int h = 0x811C9DC5; // FNV-1a
+        for (int i = from; i < to; i++) {
+            h ^= lower(buf.get(i)) & 0xFF;
+            h *= 0x01000193;
+        }
+        return h ^ (h >>> 16);
+    }
+
+    private static byte lower(byte b) {
+        return (b >= 'A' && b <= 'Z') ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t' || b == '\r';
+    }
+}
@@ -0,0 +1,116 @@
+// InventoryCacheTest.java
+// Checks that loading a character from the binary cache gives exactly what parsing the .txt
+// file gives, including inventories that do not survive the text format unchanged (';' in a
+// name, spaces around a description, descriptions in categories that don't keep them), and
+// that a cache entry is never used for file contents other than the ones it was built from.
+//
+// Run from the project root (exits with status 1 on failure):
+//   javac -encoding UTF-8 -d out src/*.java test/*.java && java -cp out InventoryCacheTest
+
+import java.io.*;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.util.*;
+
+public class InventoryCacheTest {
+
+    private static final List<String> failures = new ArrayList<>();
+
+    public static void main(String[] args) throws Exception {
+        File dir = Files.createTempDirectory("inventory-cache-test").toFile();
+        try {
+            run(dir);
+        } finally {
+            deleteRecursively(dir);
+        }
+        if (!failures.isEmpty()) {
+            System.out.println("FAILED:");
+            for (String f : failures) {
+                System.out.println("  - " + f);
+            }
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private static void run(File dir) throws Exception {
+        InventoryCache cache = new InventoryCache(new File(dir, ".cache"), InventoryCache.DEFAULT_MAX_BYTES);
+        File file = new File(dir, "Tester.txt");
+
+        // 1. An inventory as it can be entered through the Add menu, not as the file reads it back
+        Map<String, Map<String, InventoryManager.ItemDetails>> inventory = new LinkedHashMap<>();
+        put(inventory, "Weapons", "Sword;+1", 3, "sharp  ");
+        put(inventory, "Weapons", "Axe", 1, "  heavy  ");
+        put(inventory, "Weapons", "Épée", 2, "Lame fine ✓");
+        put(inventory, "Important Items", " Map ", 1, "to the; vault");
+        put(inventory, "Money", "Gold", 25, "coins keep no description");
+        put(inventory, "Trinkets", "Ring", 1, "custom categories keep no description");
+        for (int i = 0; i < 600; i++) { // Several cache blocks
+            put(inventory, "General Items", "Torch " + i, i + 1, i % 2 == 0 ? "" : "lit " + i);
+        }
+
+        // 2. Save it the way saveInventory does, and cache it through the same helper
+        byte[] content = InventoryManager.renderInventoryFile("Tester", inventory);
+        Files.write(file.toPath(), content);
+        InventoryManager.parseAndCache(cache, file, content);
+
+        // 3. A cached load must equal a fresh parse of the same file
+        Map<String, Map<String, InventoryManager.ItemDetails>> cached = cache.load(file, content);
+        Map<String, Map<String, InventoryManager.ItemDetails>> parsed = InventoryManager.parseInventoryFile(content);
+        if (cached == null) {
+            failures.add("Cache entry was not used for the file it was built from.");
+        } else if (!flatten(cached).equals(flatten(parsed))) {
+            failures.add("Cached load differs from a fresh parse.\n    cached: " + difference(cached, parsed)
+                    + "\n    parsed: " + difference(parsed, cached));
+        }
+        if (flatten(parsed).equals(flatten(inventory))) {
+            failures.add("Test inventory round-trips unchanged, so it no longer exercises the difference.");
+        }
+
+        // 4. Same size and mtime but different contents: the entry must not be used
+        byte[] changed = content.clone();
+        int digit = new String(changed, InventoryManager.FILE_CHARSET).indexOf("Gold;25") + "Gold;".length();
+        changed[digit] = '9'; // "Gold;25" -> "Gold;95", same length
+        FileTime mtime = Files.getLastModifiedTime(file.toPath());
+        Files.write(file.toPath(), changed);
+        Files.setLastModifiedTime(file.toPath(), mtime);
+        if (cache.load(file, changed) != null) {
+            failures.add("Cache entry was used for different contents with the same size and mtime.");
+        }
+    }
+
+    private static void put(Map<String, Map<String, InventoryManager.ItemDetails>> inventory,
+                            String category, String itemName, int quantity, String description) {
+        inventory.computeIfAbsent(category, k -> new LinkedHashMap<>())
+                .put(itemName, new InventoryManager.ItemDetails(quantity, description));
+    }
+
+    // Category|ItemName|Quantity|Description for every item, in map order
+    private static List<String> flatten(Map<String, Map<String, InventoryManager.ItemDetails>> inventory) {
+        List<String> lines = new ArrayList<>();
+        for (Map.Entry<String, Map<String, InventoryManager.ItemDetails>> cat : inventory.entrySet()) {
+            for (Map.Entry<String, InventoryManager.ItemDetails> item : cat.getValue().entrySet()) {
+                lines.add(cat.getKey() + "|" + item.getKey() + "|" + item.getValue().quantity + "|" + item.getValue().description);
+            }
+        }
+        return lines;
+    }
+
+    // Entries of 'a' that are not in 'b'
+    private static List<String> difference(Map<String, Map<String, InventoryManager.ItemDetails>> a,
+                                           Map<String, Map<String, InventoryManager.ItemDetails>> b) {
+        List<String> lines = flatten(a);
+        lines.removeAll(flatten(b));
+        return lines;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}
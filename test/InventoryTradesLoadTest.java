@@ -0,0 +1,207 @@
+// InventoryTradesLoadTest.java
+// Concurrent load test for InventoryTrades: many threads trade random batches between
+// character files with overlapping participants, while a second JVM does the same on the
+// same directory (two copies of the program). The test then checks that every item's
+// total across all files is unchanged and that no journal or temp files are left behind.
+//
+// Run from the project root (exits with status 1 on failure):
+//   javac -encoding UTF-8 -d out src/*.java test/*.java && java -cp out InventoryTradesLoadTest
+
+import java.io.*;
+import java.nio.file.*;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class InventoryTradesLoadTest {
+
+    private static final int CHARACTERS = 6;
+    private static final int THREADS = 16;
+    private static final int TRADES = 3000;
+    private static final long TIMEOUT_SECONDS = 120; // Generous; hitting it means a deadlock
+
+    // Category;ItemName;Quantity;Description - includes non-ASCII names to check the file encoding
+    private static final String[][] STARTING_ITEMS = {
+            {"Money", "Gold", "400", ""},
+            {"Money", "Silver", "600", ""},
+            {"Weapons", "Dagger", "40", "Small and sharp"},
+            {"Weapons", "Épée", "30", "Lame fine ✓"},
+            {"General Items", "Rope", "50", "Hempen, 50 feet"},
+            {"Important Items", "Pierre de lune", "25", "Brille la nuit"},
+    };
+
+    private static final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 2 && args[0].equals("--second-instance")) {
+            runSecondInstance(new File(args[1]));
+            return;
+        }
+        File dir = Files.createTempDirectory("inventory-trades-test").toFile();
+        try {
+            run(dir);
+        } finally {
+            deleteRecursively(dir);
+        }
+        if (!failures.isEmpty()) {
+            System.out.println("FAILED:");
+            for (String f : failures) {
+                System.out.println("  - " + f);
+            }
+            System.exit(1);
+        }
+        System.out.println("PASSED");
+    }
+
+    private static void run(File dir) throws Exception {
+        // 1. Every character starts with the same items
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < CHARACTERS; i++) {
+            String name = "Character" + i;
+            names.add(name);
+            Map<String, Map<String, InventoryManager.ItemDetails>> inventory = new LinkedHashMap<>();
+            for (String[] item : STARTING_ITEMS) {
+                inventory.computeIfAbsent(item[0], k -> new LinkedHashMap<>())
+                        .put(item[1], new InventoryManager.ItemDetails(Integer.parseInt(item[2]), item[3]));
+            }
+            try (PrintWriter writer = new PrintWriter(new OutputStreamWriter(
+                    new FileOutputStream(new File(dir, name + ".txt")), InventoryManager.FILE_CHARSET))) {
+                InventoryManager.writeInventoryFile(writer, name, inventory);
+            }
+        }
+        Map<String, Long> before = itemTotals(dir, names);
+        for (String[] item : STARTING_ITEMS) {
+            long expected = (long) CHARACTERS * Integer.parseInt(item[2]);
+            if (!Long.valueOf(expected).equals(before.get(item[0] + ";" + item[1]))) {
+                failures.add("Starting files did not read back '" + item[1] + "' x " + expected + ": " + before);
+            }
+        }
+
+        // 2. Random trades from this JVM and a second one; each picks 2-4 participants, so participant sets overlap constantly
+        Process secondInstance = new ProcessBuilder(
+                new File(System.getProperty("java.home"), "bin/java").getPath(),
+                "-cp", System.getProperty("java.class.path"),
+                InventoryTradesLoadTest.class.getName(), "--second-instance", dir.getPath())
+                .inheritIO().start();
+        runTrades(dir, names);
+        if (!secondInstance.waitFor(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            secondInstance.destroyForcibly();
+            failures.add("Second instance did not finish within " + TIMEOUT_SECONDS + "s (possible deadlock).");
+            return;
+        }
+        if (secondInstance.exitValue() != 0) {
+            failures.add("Second instance failed (exit status " + secondInstance.exitValue() + ").");
+        }
+
+        // 3. Item totals are conserved, per item, across all files
+        Map<String, Long> after = itemTotals(dir, names);
+        if (!before.equals(after)) {
+            failures.add("Item totals changed. Before: " + before + " After: " + after);
+        }
+
+        // 4. Nothing left over from the commit protocol (the lock files in .locks/ stay by design)
+        String[] leftovers = dir.list((d, name) -> !name.endsWith(".txt") && !name.equals(".locks"));
+        if (leftovers != null && leftovers.length > 0) {
+            failures.add("Journal or temp files left behind: " + Arrays.toString(leftovers));
+        }
+    }
+
+    // The second copy of the program: trades on the same files, then reports its own failures
+    private static void runSecondInstance(File dir) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < CHARACTERS; i++) {
+            names.add("Character" + i);
+        }
+        runTrades(dir, names);
+        if (!failures.isEmpty()) {
+            System.out.println("Second instance FAILED:");
+            for (String f : failures) {
+                System.out.println("  - " + f);
+            }
+            System.exit(1);
+        }
+    }
+
+    // Run TRADES random trades on THREADS threads; every trade's events must net to zero per item
+    private static void runTrades(File dir, List<String> names) throws Exception {
+        Map<String, Long> eventDeltas = new ConcurrentHashMap<>();
+        InventoryTrades trades = new InventoryTrades(dir, e ->
+                eventDeltas.merge(e.getCategory() + ";" + e.getItemName(), (long) e.getQuantityDelta(), Long::sum));
+        AtomicInteger committed = new AtomicInteger();
+        AtomicInteger rejected = new AtomicInteger();
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        long start = System.nanoTime();
+        for (int n = 0; n < TRADES; n++) {
+            pool.execute(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                List<String> participants = new ArrayList<>(names);
+                Collections.shuffle(participants, random);
+                participants = participants.subList(0, 2 + random.nextInt(3));
+
+                List<InventoryTrades.Transfer> batch = new ArrayList<>();
+                int size = 1 + random.nextInt(4);
+                for (int i = 0; i < size; i++) {
+                    String from = participants.get(random.nextInt(participants.size()));
+                    String to;
+                    do {
+                        to = participants.get(random.nextInt(participants.size()));
+                    } while (to.equals(from));
+                    String[] item = STARTING_ITEMS[random.nextInt(STARTING_ITEMS.length)];
+                    batch.add(new InventoryTrades.Transfer(from, to, item[0], item[1], 1 + random.nextInt(10)));
+                }
+                try {
+                    trades.execute(batch);
+                    committed.incrementAndGet();
+                } catch (InventoryTrades.TradeException e) {
+                    rejected.incrementAndGet(); // Shortfall: expected now and then, must leave files unchanged
+                } catch (IOException | RuntimeException e) {
+                    failures.add("Trade failed unexpectedly: " + e);
+                }
+            });
+        }
+        pool.shutdown();
+        if (!pool.awaitTermination(TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+            pool.shutdownNow();
+            failures.add("Trades did not finish within " + TIMEOUT_SECONDS + "s (possible deadlock).");
+            return;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("pid %d: %d trades committed, %d rejected in %.2fs (%.0f trades/s)%n",
+                ProcessHandle.current().pid(), committed.get(), rejected.get(), seconds, TRADES / seconds);
+
+        for (Map.Entry<String, Long> delta : eventDeltas.entrySet()) {
+            if (delta.getValue() != 0) {
+                failures.add("Published events for " + delta.getKey() + " do not net to zero: " + delta.getValue());
+            }
+        }
+        if (committed.get() == 0) {
+            failures.add("No trade committed, so nothing was exercised.");
+        }
+    }
+
+    // Category;ItemName -> total quantity across every character file
+    private static Map<String, Long> itemTotals(File dir, List<String> names) throws IOException {
+        Map<String, Long> totals = new TreeMap<>();
+        for (String name : names) {
+            Map<String, Map<String, InventoryManager.ItemDetails>> inventory =
+                    InventoryManager.readInventoryFile(new File(dir, name + ".txt"));
+            for (Map.Entry<String, Map<String, InventoryManager.ItemDetails>> cat : inventory.entrySet()) {
+                for (Map.Entry<String, InventoryManager.ItemDetails> item : cat.getValue().entrySet()) {
+                    totals.merge(cat.getKey() + ";" + item.getKey(), (long) item.getValue().quantity, Long::sum);
+                }
+            }
+        }
+        return totals;
+    }
+
+    private static void deleteRecursively(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteRecursively(child);
+            }
+        }
+        file.delete();
+    }
+}